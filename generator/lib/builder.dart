@@ -0,0 +1,12 @@
+/// Builder entry point for `build_runner`. Generates typed codecs for classes annotated with `VertxCodec` of
+/// `package:vertx_dart_sockjs/event_bus_codec.dart`.
+///
+/// See build.yaml of this package.
+library vertx_dart_sockjs_generator.builder;
+
+import 'package:build/build.dart';
+import 'package:source_gen/source_gen.dart';
+import 'package:vertx_dart_sockjs_generator/src/codec_generator.dart';
+
+/// Creates the [Builder] they generates the `*.g.dart` part with the codecs.
+Builder vertxCodecBuilder(BuilderOptions options) => new PartBuilder([new VertxCodecGenerator()]);
@@ -0,0 +1,213 @@
+import 'dart:async';
+
+import 'package:analyzer/dart/element/element.dart';
+import 'package:analyzer/dart/element/type.dart';
+import 'package:build/build.dart';
+import 'package:source_gen/source_gen.dart';
+
+/// Must be resolved by url, as the annotation library depends on JS interop and cannot be loaded within the builder.
+const TypeChecker _codecAnnotation = const TypeChecker.fromUrl('package:vertx_dart_sockjs/event_bus_codec.dart#VertxCodec');
+
+const TypeChecker _stringType = const TypeChecker.fromRuntime(String);
+const TypeChecker _boolType = const TypeChecker.fromRuntime(bool);
+const TypeChecker _numType = const TypeChecker.fromRuntime(num);
+const TypeChecker _intType = const TypeChecker.fromRuntime(int);
+const TypeChecker _doubleType = const TypeChecker.fromRuntime(double);
+const TypeChecker _listType = const TypeChecker.fromRuntime(List);
+
+/// Generates for each class annotated with `VertxCodec` a `<ClassName>Codec` class. This codec class provides an
+/// `EventBusBodyEncoder` and `EventBusBodyDecoder` specialized on that DTO and a function to register both of them.
+///
+/// The encoder writes the fields directly as JSON into a [StringBuffer]. So there is no intermediate [Map] and no dynamic dispatch
+/// over the values like within the default encoder. The decoder reads each field typed directly from the JS object of the received
+/// message, so the body is not stringified and parsed again into a [Map].
+///
+/// Dart has no static initializers the codecs could register themselves on load. So per library a `registerCodecs` function is
+/// generated, it registers all codecs of the library and must be called once on the `EncoderRegistry` and `DecoderRegistry` of the
+/// event bus.
+class VertxCodecGenerator extends Generator {
+  const VertxCodecGenerator();
+
+  @override
+  Future<String> generate(LibraryReader library, BuildStep buildStep) async {
+    List<ClassElement> classes = [];
+    for (AnnotatedElement annotated in library.annotatedWith(_codecAnnotation)) {
+      Element element = annotated.element;
+      if (element is! ClassElement) {
+        throw new InvalidGenerationSourceError("@VertxCodec can only be applied on classes. Failing element: ${element.name}",
+            todo: "Remove the annotation from ${element.name}");
+      }
+      classes.add(element);
+    }
+    if (classes.isEmpty) {
+      return null;
+    }
+
+    StringBuffer out = new StringBuffer();
+    for (ClassElement clazz in classes) {
+      List<FieldElement> fields = clazz.fields.where((FieldElement f) => !f.isStatic && !f.isSynthetic && f.isPublic).toList();
+      out.writeln(new _CodecWriter(clazz, fields).write());
+    }
+    _writeRegisterCodecs(out, classes);
+    return out.toString();
+  }
+
+  void _writeRegisterCodecs(StringBuffer out, List<ClassElement> classes) {
+    out.writeln("/// Registers the codecs of all DTO's of this library on those registries. To call once per event bus.");
+    out.writeln("void registerCodecs(EncoderRegistry encoders, DecoderRegistry decoders) {");
+    for (ClassElement clazz in classes) {
+      out.writeln("  ${clazz.name}Codec.register(encoders, decoders);");
+    }
+    out.writeln("}");
+  }
+}
+
+/// Writes the source of a single codec class.
+class _CodecWriter {
+  final ClassElement clazz;
+
+  final List<FieldElement> fields;
+
+  final StringBuffer _out = new StringBuffer();
+
+  _CodecWriter(this.clazz, this.fields);
+
+  String get _name => clazz.name;
+
+  String write() {
+    _out.writeln("/// Generated codec for [$_name].");
+    _out.writeln("class ${_name}Codec {");
+    _writeEncode();
+    _writeDecode();
+    _writeRegister();
+    _out.writeln("}");
+    return _out.toString();
+  }
+
+  void _writeEncode() {
+    _out.writeln("  /// [EventBusBodyEncoder] for [$_name].");
+    _out.writeln("  static String encode($_name dto) {");
+    _out.writeln("    StringBuffer out = new StringBuffer();");
+    _out.writeln("    write(out, dto);");
+    _out.writeln("    return out.toString();");
+    _out.writeln("  }");
+    _out.writeln();
+    _out.writeln("  /// Writes that [dto] as JSON object into [out].");
+    _out.writeln("  static void write(StringSink out, $_name dto) {");
+    _out.writeln("    if (dto == null) {");
+    _out.writeln("      out.write('null');");
+    _out.writeln("      return;");
+    _out.writeln("    }");
+    for (int i = 0; i < fields.length; i++) {
+      FieldElement field = fields[i];
+      String separator = i == 0 ? "{" : ",";
+      _out.writeln("    out.write('$separator\"${field.name}\":');");
+      _out.writeln("    ${_writeValue(field.type, "dto.${field.name}", field)};");
+    }
+    _out.writeln("    out.write('${fields.isEmpty ? "{}" : "}"}');");
+    _out.writeln("  }");
+    _out.writeln();
+  }
+
+  /// Returns the expression that writes that [value] of [type] into the sink "out".
+  String _writeValue(DartType type, String value, FieldElement field) {
+    if (_stringType.isExactlyType(type)) {
+      return "writeJsonString(out, $value)";
+    } else if (_isPrimitive(type)) {
+      return "writeJsonPrimitive(out, $value)";
+    } else if (_isCodecType(type)) {
+      return "${type.name}Codec.write(out, $value)";
+    } else if (_isList(type)) {
+      DartType elementType = (type as InterfaceType).typeArguments.first;
+      return "writeJsonList(out, $value, (StringSink out, ${elementType.name} e) => ${_writeValue(elementType, "e", field)})";
+    }
+    throw _unsupported(field);
+  }
+
+  void _writeDecode() {
+    _out.writeln("  /// [EventBusBodyDecoder] for [$_name].");
+    _out.writeln("  static $_name decode(dynamic body) => fromJson(decodeJsonObject(body));");
+    _out.writeln();
+    _out.writeln("  /// Creates a [$_name] from that JSON object, either a [Map] or the JS object of a received message.");
+    _out.writeln("  static $_name fromJson(dynamic json) {");
+    _out.writeln("    if (json == null) {");
+    _out.writeln("      return null;");
+    _out.writeln("    }");
+
+    ConstructorElement constructor = clazz.unnamedConstructor;
+    if (constructor == null) {
+      throw new InvalidGenerationSourceError("$_name has no unnamed constructor", todo: "Add an unnamed constructor to $_name");
+    }
+    Map<String, FieldElement> byName = new Map.fromIterable(fields, key: (FieldElement f) => f.name);
+    Set<String> viaConstructor = new Set();
+    List<String> positional = [];
+    List<String> named = [];
+    for (ParameterElement param in constructor.parameters) {
+      FieldElement field = byName[param.name];
+      if (field == null) {
+        if (!param.isOptional) {
+          throw new InvalidGenerationSourceError("Constructor parameter ${param.name} of $_name has no corresponding field",
+              todo: "Add a public field ${param.name}");
+        }
+        continue;
+      }
+      viaConstructor.add(field.name);
+      String value = _readValue(field.type, 'readJsonField(json, "${field.name}")', field);
+      if (param.isNamed) {
+        named.add("${param.name}: $value");
+      } else {
+        positional.add(value);
+      }
+    }
+
+    List<String> cascades = [];
+    for (FieldElement field in fields.where((FieldElement f) => !viaConstructor.contains(f.name))) {
+      if (field.isFinal) {
+        throw new InvalidGenerationSourceError("Final field ${field.name} of $_name is not set by the constructor",
+            todo: "Add ${field.name} as constructor parameter");
+      }
+      cascades.add("..${field.name} = ${_readValue(field.type, 'readJsonField(json, "${field.name}")', field)}");
+    }
+
+    String arguments = (new List<String>.from(positional)..addAll(named)).join(", ");
+    _out.writeln("    return new $_name($arguments)${cascades.join()};");
+    _out.writeln("  }");
+    _out.writeln();
+  }
+
+  /// Returns the expression that reads that [value] from the JSON object as [type].
+  String _readValue(DartType type, String value, FieldElement field) {
+    if (_doubleType.isExactlyType(type)) {
+      // JSON has no separate type for floating point numbers
+      return "($value as num)?.toDouble()";
+    } else if (_stringType.isExactlyType(type) || _isPrimitive(type)) {
+      return "$value as ${type.name}";
+    } else if (_isCodecType(type)) {
+      return "${type.name}Codec.fromJson($value)";
+    } else if (_isList(type)) {
+      DartType elementType = (type as InterfaceType).typeArguments.first;
+      return "decodeJsonList($value as List, (dynamic e) => ${_readValue(elementType, "e", field)})";
+    }
+    throw _unsupported(field);
+  }
+
+  void _writeRegister() {
+    _out.writeln("  /// Registers the encoder and decoder of [$_name] on those registries.");
+    _out.writeln("  static void register(EncoderRegistry encoders, DecoderRegistry decoders) {");
+    _out.writeln("    encoders[$_name] = encode;");
+    _out.writeln("    decoders[$_name] = decode;");
+    _out.writeln("    registerRawBodyDecoder(decode);");
+    _out.writeln("  }");
+  }
+
+  bool _isPrimitive(DartType type) =>
+      _boolType.isExactlyType(type) || _numType.isExactlyType(type) || _intType.isExactlyType(type) || _doubleType.isExactlyType(type);
+
+  bool _isCodecType(DartType type) => type.element != null && _codecAnnotation.hasAnnotationOfExact(type.element);
+
+  bool _isList(DartType type) => type is InterfaceType && _listType.isExactly(type.element) && type.typeArguments.isNotEmpty;
+
+  InvalidGenerationSourceError _unsupported(FieldElement field) => new InvalidGenerationSourceError(
+      "Type ${field.type} of field ${field.name} on $_name is not supported by @VertxCodec",
+      todo: "Use String, num, int, double, bool, another @VertxCodec class or a List of them");
+}
@@ -3,6 +3,9 @@ import 'dart:convert';
 import 'package:logging/logging.dart';
 import 'package:vertx_dart_sockjs/src/vertx_event_bus_base.dart';
 
+export 'package:vertx_dart_sockjs/src/codec/json_reader.dart';
+export 'package:vertx_dart_sockjs/src/codec/json_writer.dart';
+
 final Logger _log = new Logger("Codec");
 
 /// Thrown on codec failures.
@@ -36,8 +39,43 @@ class EncoderRegistry {
   bool hasEncoderFor(Type type) => _encoderByType.containsKey(type);
 }
 
+/// Registry for [EventBusBodyDecoder]. Counterpart of [EncoderRegistry], so decoders can be looked up by the [Type] they produce.
+class DecoderRegistry {
+  final Map<Type, EventBusBodyDecoder> _decoderByType = {};
+
+  operator [](Type type) => _decoderByType[type];
+
+  operator []=(Type type, EventBusBodyDecoder decoder) => _decoderByType[type] = decoder;
+
+  EventBusBodyDecoder removeDecoder(Type type) => _decoderByType.remove(type);
+
+  bool hasDecoderFor(Type type) => _decoderByType.containsKey(type);
+}
+
+/// Annotation for DTO classes a typed codec should get generated for by the builder of the `vertx_dart_sockjs_generator` package.
+///
+/// The generated `<ClassName>Codec` writes the JSON representation of the DTO directly, without to build a [Map] in between,
+/// and reads the fields typed back directly from the received JS object. The generated `registerCodecs` function registers all
+/// codecs of a library. All public instance fields are part of the codec. Supported field types are [String], [num],
+/// [int], [double], [bool], other annotated DTO's and [List] of them.
+class VertxCodec {
+  const VertxCodec();
+}
+
+/// Shorthand for [VertxCodec].
+const VertxCodec vertxCodec = const VertxCodec();
+
 final JsonCodec _jsonCodec = new JsonCodec();
 
+final Set<EventBusBodyDecoder> _rawBodyDecoders = new Set();
+
+/// Marks that [decoder] as able to read the body as it's received, so also a JSON object as JS object. [decodeBody] then
+/// passes the body as it is, without to stringify it. Generated codecs do so on registration. Tear-offs of the same static
+/// function are equal, so this applies also when the decoder is passed directly to a consumer.
+void registerRawBodyDecoder(EventBusBodyDecoder decoder) {
+  _rawBodyDecoders.add(decoder);
+}
+
 /// Returns true when the given body is a [String] but it may get converted byte json parsing.
 bool shouldStayAsString(dynamic body) =>
     body != null && body is String && (num.parse(body, (_) => null) != null || (body == "true" || body == "false"));
@@ -102,7 +140,7 @@ Object decodeBody<T>(EventBusBodyDecoder<T> decoder, dynamic body) {
     EventBusBodyDecoder dec = decoder ?? _defaultDecoder;
     try {
       // Json object in this case ... string representation
-      if (needStringify(body)) {
+      if (needStringify(body) && !_rawBodyDecoders.contains(dec)) {
         body = stringify(body);
       }
       return dec(body);
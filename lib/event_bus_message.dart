@@ -61,10 +61,24 @@ class VertxMessage<T> {
 
   final EncoderRegistry _encoderRegistry;
 
+  /// Get called for any reply sent on this message. May null
+  final OutboundTrafficCallback _onOutbound;
+
   Map<String, String> _headers;
 
-  VertxMessage(this._impl, this._consumerExecDelegate, this._encoderRegistry, EventBusBodyDecoder decoder)
-      : body = decodeBody(decoder, _impl?.body);
+  /// False when this message shares its javascript message with other callers, so it must not be replied.
+  final bool _replyable;
+
+  VertxMessage(this._impl, this._consumerExecDelegate, this._encoderRegistry, EventBusBodyDecoder decoder, [this._onOutbound])
+      : body = decodeBody(decoder, _impl?.body),
+        _replyable = true;
+
+  /// Message over a javascript message they is shared between multiple callers, like a cached reply. It cannot get replied,
+  /// as each caller would send its own reply to the same reply address.
+  VertxMessage.shared(this._impl, this._consumerExecDelegate, this._encoderRegistry, EventBusBodyDecoder decoder)
+      : body = decodeBody(decoder, _impl?.body),
+        _onOutbound = null,
+        _replyable = false;
 
   /// Sends a reply on this message with that [body] and [headers]. When the [consumer] if present,
   /// then a further reply will be expected.
@@ -75,8 +89,11 @@ class VertxMessage<T> {
       if (consumer != null) {
         _impl.reply(encoded, encodeHeader(headers), allowInterop((MessageFailureJS failure, [VertxMessageJS msg]) {
           try {
-            executeConsumer(_consumerExecDelegate, consumer,
-                new AsyncResult(failure, failure == null ? new VertxMessage(msg, _consumerExecDelegate, _encoderRegistry, decoder) : null));
+            executeConsumer(
+                _consumerExecDelegate,
+                consumer,
+                new AsyncResult(failure,
+                    failure == null ? new VertxMessage(msg, _consumerExecDelegate, _encoderRegistry, decoder, _onOutbound) : null));
           } catch (e, st) {
             _log.severe("Failed to execute reply consumer for event on initial address ${_impl?.address}", e, st);
           }
@@ -87,6 +104,11 @@ class VertxMessage<T> {
         _impl.reply(encoded, encodeHeader(headers), null);
         _log.finest("Vertx reply event sent as answer on address: $address");
       }
+      if (_onOutbound != null) {
+        _onOutbound();
+      }
+    } else if (!_replyable) {
+      throw new NoReplyExpectException("Message on address $address is shared with other callers and cannot get replied");
     } else {
       throw new NoReplyExpectException("Sender of the message on address $address doesn't expect a reply message");
     }
@@ -120,5 +142,5 @@ class VertxMessage<T> {
   }
 
   /// Returns [true] when the event contains a address to reply on. Otherwise [false]
-  bool get expectReply => _impl.replyAddress != null && _impl.replyAddress.isNotEmpty;
+  bool get expectReply => _replyable && _impl.replyAddress != null && _impl.replyAddress.isNotEmpty;
 }
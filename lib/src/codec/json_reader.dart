@@ -0,0 +1,31 @@
+import 'dart:convert';
+
+import 'package:js/js_util.dart';
+
+/// Support functions for generated codecs (see [VertxCodec]). They read the fields directly from the JS object of a received message,
+/// so the body must not get stringified and parsed again into a [Map] for decoding.
+
+/// Returns the JSON object of that event body. Is the JS object of a received message, an already decoded [Map] or still its [String]
+/// representation, which get parsed.
+dynamic decodeJsonObject(dynamic body) {
+  if (body == null) {
+    return null;
+  }
+  return body is String ? JSON.decode(body) : body;
+}
+
+/// Returns the value of that field on the [json] object, either a [Map] or a JS object. Nested objects of a JS object are JS
+/// objects too, arrays are [List].
+dynamic readJsonField(dynamic json, String name) => json is Map ? json[name] : getProperty(json, name);
+
+/// Decodes each element of that JSON array with [decodeElement].
+List<T> decodeJsonList<T>(List<dynamic> list, T decodeElement(dynamic element)) {
+  if (list == null) {
+    return null;
+  }
+  List<T> out = new List<T>(list.length);
+  for (int i = 0; i < list.length; i++) {
+    out[i] = decodeElement(list[i]);
+  }
+  return out;
+}
@@ -0,0 +1,45 @@
+import 'dart:convert';
+
+/// Support functions for generated codecs (see [VertxCodec]). They write JSON directly into a [StringSink], so no intermediate [Map]
+/// must get built for encoding.
+
+final RegExp _needsEscape = new RegExp(r'["\\\x00-\x1f]');
+
+/// Writes that [value] as JSON string literal into [out]. Writes null when [value] is null.
+void writeJsonString(StringSink out, String value) {
+  if (value == null) {
+    out.write('null');
+  } else if (!value.contains(_needsEscape)) {
+    // Fast path, most values contains no characters to escape
+    out..write('"')..write(value)..write('"');
+  } else {
+    out.write(JSON.encode(value));
+  }
+}
+
+/// Writes that [value] of a JSON primitive type (num or bool) into [out]. Writes null when [value] is null.
+///
+/// Throws a [JsonUnsupportedObjectError] for NaN and infinite values, like [JSON.encode] does, as JSON has no representation
+/// for them.
+void writeJsonPrimitive(StringSink out, Object value) {
+  if (value is double && (value.isNaN || value.isInfinite)) {
+    throw new JsonUnsupportedObjectError(value, cause: "NaN and infinite numbers are not valid JSON");
+  }
+  out.write(value == null ? 'null' : value);
+}
+
+/// Writes that [list] as JSON array into [out]. Each element get written by [writeElement].
+void writeJsonList<T>(StringSink out, List<T> list, void writeElement(StringSink out, T element)) {
+  if (list == null) {
+    out.write('null');
+    return;
+  }
+  out.write('[');
+  for (int i = 0; i < list.length; i++) {
+    if (i > 0) {
+      out.write(',');
+    }
+    writeElement(out, list[i]);
+  }
+  out.write(']');
+}
@@ -0,0 +1,114 @@
+import 'dart:async';
+import 'dart:math';
+
+import 'package:logging/logging.dart';
+import 'package:vertx_dart_sockjs/src/vertx_event_bus_base.dart';
+
+final Logger _log = new Logger("Heartbeat");
+
+/// Ping frame as the JS event bus would send it.
+const String _pingFrame = '{"type":"ping"}';
+
+/// Configuration of the traffic aware heartbeat. Replaces the fixed interval ping of [EventBusJS] when enabled.
+///
+/// Any event, sent or received, counts as sign of life. So no ping is sent while events flow in either direction. Only when the
+/// connection was idle for the whole interval a ping is sent, and the interval get doubled with each ping, up to [maxInterval].
+/// Any traffic brings the interval back to [minInterval].
+///
+/// Notice, the Vert.x bridge only accepts pings as sign of life. So the server must consider any frame in both directions
+/// instead, with a timeout greater than [maxInterval].
+class AdaptiveHeartbeatOptions {
+  /// Interval in milliseconds, used after connect and after traffic.
+  final int minInterval;
+
+  /// Maximum interval in milliseconds while idle. The default leaves room for latency within the 10 seconds ping timeout of the
+  /// bridge, so the server must not detect dead connections later than with the fixed interval ping.
+  final int maxInterval;
+
+  const AdaptiveHeartbeatOptions({this.minInterval = 5000, this.maxInterval = 8000});
+}
+
+/// Traffic aware heartbeat for a single [EventBusJS] connection.
+class Heartbeat {
+  final AdaptiveHeartbeatOptions options;
+
+  final Stopwatch _clock = new Stopwatch();
+
+  EventBusJS _eb;
+
+  Timer _timer;
+
+  int _interval;
+
+  /// Time of the last outgoing frame, ping or event.
+  int _lastOutbound = 0;
+
+  /// Set on any outgoing or incoming event since the last deadline.
+  bool _traffic = false;
+
+  Heartbeat(this.options);
+
+  /// Starts to keep alive that [eb]. Any previous connection will no longer get pinged.
+  void start(EventBusJS eb) {
+    stop();
+    _eb = eb;
+    _eb.pingEnabled(false);
+    _clock
+      ..reset()
+      ..start();
+    _interval = options.minInterval;
+    _ping();
+  }
+
+  /// Stops pinging.
+  void stop() {
+    _timer?.cancel();
+    _timer = null;
+    _eb = null;
+  }
+
+  /// Notifies about an event sent by the client. It replaces the next ping.
+  void outbound() {
+    _lastOutbound = _clock.elapsedMilliseconds;
+    _traffic = true;
+  }
+
+  /// Notifies about an event received by the client. It replaces the next ping.
+  void inbound() {
+    _traffic = true;
+  }
+
+  void _schedule(int delay) {
+    _timer = new Timer(new Duration(milliseconds: max(0, delay)), _onDeadline);
+  }
+
+  void _onDeadline() {
+    if (_eb == null) {
+      return;
+    }
+    if (_eb.state != EventBusState.kOpen) {
+      _log.fine("Event bus not open, heartbeat stopped");
+      stop();
+      return;
+    }
+    if (_traffic) {
+      // Traffic within the window is sign of life enough, so no ping. Watch the next window with the minimum interval
+      _traffic = false;
+      _interval = options.minInterval;
+      int sinceOutbound = _clock.elapsedMilliseconds - _lastOutbound;
+      _schedule(sinceOutbound < _interval ? _interval - sinceOutbound : _interval);
+    } else {
+      // Idle for the whole window, so ping and stretch the interval
+      _ping();
+    }
+  }
+
+  void _ping() {
+    _eb.sockJSConn.send(_pingFrame);
+    _lastOutbound = _clock.elapsedMilliseconds;
+    _traffic = false;
+    _log.finest("Ping sent, next in $_interval ms");
+    _schedule(_interval);
+    _interval = min(_interval * 2, options.maxInterval);
+  }
+}
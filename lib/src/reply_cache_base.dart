@@ -0,0 +1,134 @@
+import 'dart:async';
+import 'dart:collection';
+
+import 'package:logging/logging.dart';
+
+final Logger _log = new Logger("ReplyCache");
+
+/// Configuration for coalescing of identical requests with reply and the caching of their replies.
+///
+/// Only requests on the addresses of [ttlByAddress] are coalesced. Their replies will be cached for the configured [Duration].
+/// A [Duration.ZERO] means the requests will be coalesced while they are in flight, but the reply is not cached.
+class ReplyCacheOptions {
+  /// Maximum count of cached replies. When reached the least recently used reply will be evicted.
+  final int maxEntries;
+
+  /// Addresses they should be coalesced / cached, together with the time to live of their cached replies.
+  final Map<String, Duration> ttlByAddress;
+
+  /// Names of the headers they are part of the cache key. Other headers are ignored to identify identical requests.
+  final List<String> keyHeaders;
+
+  /// Address on which the server can publish invalidations. The body is the address for which the cached replies should
+  /// get invalidated. When the body is empty, all cached replies get invalidated.
+  final String invalidationAddress;
+
+  const ReplyCacheOptions(
+      {this.ttlByAddress = const {}, this.maxEntries = 100, this.keyHeaders = const [], this.invalidationAddress});
+}
+
+/// Cached reply of a request.
+class _CacheEntry<T> {
+  final String address;
+  final T reply;
+  final DateTime expiresAt;
+
+  _CacheEntry(this.address, this.reply, this.expiresAt);
+
+  bool get expired => new DateTime.now().isAfter(expiresAt);
+}
+
+/// Coalesces identical in flight requests and caches their replies for a short time.
+///
+/// [T] is the type of the raw reply, shared between all requests with the same key.
+class ReplyCache<T> {
+  final ReplyCacheOptions options;
+
+  final Map<String, Future<T>> _inFlight = {};
+
+  /// Ordered by access, so the first entry is the least recently used.
+  final LinkedHashMap<String, _CacheEntry<T>> _entries = new LinkedHashMap();
+
+  ReplyCache(this.options);
+
+  /// Returns [true] when requests on that [address] should pass this cache.
+  bool handles(String address) => options.ttlByAddress.containsKey(address);
+
+  /// Returns the key for the request on [address] with that already encoded body and [headers].
+  ///
+  /// Absent key headers are skipped, so null and empty [headers] result in the same key.
+  String keyOf(String address, Object encodedBody, Map<String, String> headers) {
+    StringBuffer key = new StringBuffer(address)..write("\u0000")..write(encodedBody);
+    if (headers != null && headers.isNotEmpty) {
+      for (String name in options.keyHeaders) {
+        String value = headers[name];
+        if (value != null) {
+          key..write("\u0000")..write(name)..write("=")..write(value);
+        }
+      }
+    }
+    return key.toString();
+  }
+
+  /// Returns the reply for that [key]. Either from the cache, the pending request with the same key or [send] is called to
+  /// send the request over the wire. Only replies they fulfill [cacheable] are kept.
+  Future<T> lookup(String address, String key, Future<T> send(), bool cacheable(T reply)) {
+    _CacheEntry<T> entry = _entries.remove(key);
+    if (entry != null) {
+      if (!entry.expired) {
+        // Reinsert to mark as most recently used
+        _entries[key] = entry;
+        _log.finest("Reply for $address served from cache");
+        return new Future.value(entry.reply);
+      }
+    }
+
+    Future<T> pending = _inFlight[key];
+    if (pending != null) {
+      _log.finest("Request on $address coalesced with pending one");
+      return pending;
+    }
+
+    pending = send().then((T reply) {
+      // Could be invalidated meanwhile
+      if (identical(_inFlight[key], pending)) {
+        _put(address, key, reply, cacheable);
+      }
+      return reply;
+    }).whenComplete(() {
+      if (identical(_inFlight[key], pending)) {
+        _inFlight.remove(key);
+      }
+    });
+    _inFlight[key] = pending;
+    return pending;
+  }
+
+  void _put(String address, String key, T reply, bool cacheable(T reply)) {
+    Duration ttl = options.ttlByAddress[address];
+    if (ttl == null || ttl <= Duration.ZERO || !cacheable(reply)) {
+      return;
+    }
+    _entries[key] = new _CacheEntry(address, reply, new DateTime.now().add(ttl));
+    while (_entries.length > options.maxEntries) {
+      _entries.remove(_entries.keys.first);
+    }
+  }
+
+  /// Invalidates any cached reply for requests on that [address]. Requests in flight will not get cached.
+  void invalidate(String address) {
+    _log.fine("Invalidate cached replies for $address");
+    _entries.keys.where((String key) => _entries[key].address == address).toList().forEach(_entries.remove);
+    _inFlight.keys.where((String key) => key.startsWith("$address\u0000")).toList().forEach(_inFlight.remove);
+  }
+
+  /// Invalidates all cached replies.
+  void invalidateAll() {
+    _log.fine("Invalidate all cached replies");
+    _entries.clear();
+    _inFlight.clear();
+  }
+
+  /// Count of currently cached replies.
+  int get length => _entries.length;
+}
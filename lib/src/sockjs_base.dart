@@ -34,4 +34,7 @@ class SockJSImpl {
   external send(String data);
 
   external int get readyState;
+
+  /// Name of the transport in use, only present while open.
+  external String get protocol;
 }
@@ -0,0 +1,176 @@
+import 'dart:async';
+import 'dart:convert';
+import 'dart:html';
+import 'dart:js';
+
+import 'package:js/js_util.dart';
+import 'package:logging/logging.dart';
+import 'package:vertx_dart_sockjs/src/sockjs_base.dart';
+import 'package:vertx_dart_sockjs/src/vertx_event_bus_base.dart';
+
+final Logger _log = new Logger("TransportCache");
+
+/// Where the last working SockJS transport per url get remembered.
+enum TransportCacheMode {
+  /// Full transport negotiation on each connect.
+  NONE,
+
+  /// Remembered as long as the page lives.
+  MEMORY,
+
+  /// Remembered in the [Window.localStorage], so also subsequent page loads profit.
+  LOCAL_STORAGE
+}
+
+/// Last working transport of an url, together with the time it took to open the connection.
+class CachedTransport {
+  final String transport;
+
+  /// Milliseconds from connect until open
+  final int openMillis;
+
+  const CachedTransport(this.transport, this.openMillis);
+
+  @override
+  String toString() {
+    return 'CachedTransport{transport: $transport, openMillis: $openMillis}';
+  }
+}
+
+/// Remembers the last working SockJS transport per url. So subsequent connects and reconnects can try it directly instead to
+/// probe the transports they had failed before.
+class TransportCache {
+  static const String _storageKeyPrefix = "vertx_dart_sockjs.transport.";
+
+  static final TransportCache instance = new TransportCache._();
+
+  final Map<String, CachedTransport> _byUrl = {};
+
+  TransportCache._();
+
+  /// Returns the last working transport of that [url] or null.
+  CachedTransport transportFor(String url, TransportCacheMode mode) {
+    if (mode == TransportCacheMode.NONE) {
+      return null;
+    }
+    CachedTransport cached = _byUrl[url];
+    if (cached == null && mode == TransportCacheMode.LOCAL_STORAGE) {
+      cached = _load(url);
+      if (cached != null) {
+        _byUrl[url] = cached;
+      }
+    }
+    return cached;
+  }
+
+  void remember(String url, CachedTransport transport, TransportCacheMode mode) {
+    if (mode == TransportCacheMode.NONE || transport.transport == null) {
+      return;
+    }
+    _byUrl[url] = transport;
+    if (mode == TransportCacheMode.LOCAL_STORAGE) {
+      try {
+        window.localStorage[_storageKeyPrefix + url] =
+            JSON.encode({"transport": transport.transport, "openMillis": transport.openMillis});
+      } catch (e) {
+        // Storage may not available, e.g. private browsing
+        _log.fine("Failed to store transport for $url", e);
+      }
+    }
+  }
+
+  void forget(String url) {
+    _byUrl.remove(url);
+    try {
+      window.localStorage.remove(_storageKeyPrefix + url);
+    } catch (e) {
+      _log.fine("Failed to remove transport for $url", e);
+    }
+  }
+
+  CachedTransport _load(String url) {
+    try {
+      String stored = window.localStorage[_storageKeyPrefix + url];
+      if (stored != null) {
+        Map<String, dynamic> json = JSON.decode(stored);
+        return new CachedTransport(json["transport"], json["openMillis"]);
+      }
+    } catch (e) {
+      _log.fine("Failed to load transport for $url", e);
+    }
+    return null;
+  }
+}
+
+/// Opens [EventBusJS] connections. The cached transport of the url is tried first, when it fails the full negotiation
+/// over all transports follows.
+class TransportSelector {
+  final TransportCacheMode mode;
+
+  final TransportCache _cache;
+
+  /// Milliseconds the last successful open has taken. Including a failed try with the cached transport.
+  int lastOpenMillis;
+
+  /// True when the last successful open was done with the cached transport, so without the full negotiation.
+  bool lastOpenCached = false;
+
+  TransportSelector(this.mode, [TransportCache cache]) : _cache = cache ?? TransportCache.instance;
+
+  /// Returns the opened connection, or null when it could not get opened.
+  Future<EventBusJS> open(String url, EventBusJSOptions options) async {
+    Stopwatch watch = new Stopwatch()..start();
+    CachedTransport cached = _cache.transportFor(url, mode);
+    EventBusJS eb;
+    bool fromCache = false;
+    if (cached != null) {
+      _log.finest("Try cached transport $cached for $url");
+      eb = await _open(url, _restrictTo(options, cached.transport));
+      fromCache = eb != null;
+      if (eb == null) {
+        // The cached transport is kept, as the server may just be down. It get replaced when the negotiation succeeds with another
+        _log.fine("Cached transport ${cached.transport} failed for $url. Fall back to full negotiation");
+      }
+    }
+    eb ??= await _open(url, options);
+    if (eb != null) {
+      lastOpenMillis = watch.elapsedMilliseconds;
+      lastOpenCached = fromCache;
+    }
+    return eb;
+  }
+
+  Future<EventBusJS> _open(String url, EventBusJSOptions options) {
+    Completer<EventBusJS> completer = new Completer();
+    Stopwatch watch = new Stopwatch()..start();
+
+    EventBusJS eb = new EventBusJS(url, options);
+    eb.onopen = allowInterop(() {
+      watch.stop();
+      _cache.remember(url, new CachedTransport(eb.sockJSConn.protocol, watch.elapsedMilliseconds), mode);
+      _log.finest("Opened $url over ${eb.sockJSConn.protocol} in ${watch.elapsedMilliseconds} ms");
+      completer.complete(eb);
+    });
+    // Finish the completer anyway
+    eb.onclose = allowInterop((SimpleEventImpl e) {
+      if (!completer.isCompleted) {
+        completer.complete();
+      }
+    });
+    return completer.future;
+  }
+
+  /// Copy of that [options] they only allows the given [transport]. All other options of the caller are kept as they are.
+  EventBusJSOptions _restrictTo(EventBusJSOptions options, String transport) {
+    EventBusJSOptions restricted = newObject();
+    if (options != null) {
+      for (String key in objectKeys(options)) {
+        setProperty(restricted, key, getProperty(options, key));
+      }
+    }
+    // "transports" for SockJS 1.x, "protocols_whitelist" for older versions
+    setProperty(restricted, "transports", [transport]);
+    setProperty(restricted, "protocols_whitelist", [transport]);
+    return restricted;
+  }
+}
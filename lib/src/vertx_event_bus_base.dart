@@ -35,6 +35,10 @@ class MessageFailureJS {
   external String get message;
 }
 
+/// Returns the names of the own properties of that javascript object.
+@JS("Object.keys")
+external List<String> objectKeys(dynamic obj);
+
 /// Returns the parsed javascript object for that [String]
 @JS("JSON.parse")
 external dynamic parse(String obj);
@@ -101,8 +105,8 @@ class EventBusJS {
   /// Registers the given [consumer] on the given [address]. The consumer will receive any event on that [address].
   external registerHandler(String address, ConsumerJS consumer);
 
-  /// Unregister all [ConsumerJS] on that [address] of this event bus client instance. So no further event will be received.
-  external unregisterHandler(String address);
+  /// Unregister that [consumer] on that [address]. When it was the last one on this client instance, no further event will be received.
+  external unregisterHandler(String address, dynamic headers, ConsumerJS consumer);
 
   /// Set the callback which will get called when the event bus get open and ready
   external set onopen(Function onOpenCallback);
@@ -119,6 +123,15 @@ class EventBusJS {
   /// Enables ping on the event bus instance.
   external void pingEnabled(bool enable);
 
+  /// Underlying SockJS connection
+  external SockJSImpl get sockJSConn;
+
+  /// Consumers per address, as javascript object.
+  external dynamic get handlers;
+
+  /// Reply consumers per reply address, as javascript object.
+  external dynamic get replyHandlers;
+
   /// Close this event bus client.
   external void close();
 }
@@ -7,13 +7,19 @@ import 'package:vertx_dart_sockjs/event_bus_codec.dart';
 import 'package:vertx_dart_sockjs/event_bus_message.dart';
 import 'package:vertx_dart_sockjs/src/event_bus_consumer_base.dart';
 import 'package:vertx_dart_sockjs/src/event_bus_header_base.dart';
+import 'package:vertx_dart_sockjs/src/heartbeat_base.dart';
+import 'package:vertx_dart_sockjs/src/reply_cache_base.dart';
 import 'package:vertx_dart_sockjs/src/sockjs_base.dart';
+import 'package:vertx_dart_sockjs/src/transport_cache_base.dart';
 import 'package:vertx_dart_sockjs/src/vertx_event_bus_base.dart';
 
 export 'package:vertx_dart_sockjs/src/vertx_event_bus_base.dart';
 export 'package:vertx_dart_sockjs/event_bus_codec.dart';
 export 'package:vertx_dart_sockjs/event_bus_message.dart';
 export 'package:vertx_dart_sockjs/sockjs.dart';
+export 'package:vertx_dart_sockjs/src/heartbeat_base.dart' show AdaptiveHeartbeatOptions;
+export 'package:vertx_dart_sockjs/src/reply_cache_base.dart' show ReplyCacheOptions;
+export 'package:vertx_dart_sockjs/src/transport_cache_base.dart' show TransportCacheMode;
 export 'src/sockjs_base.dart';
 
 /// Internal, base implementation.
@@ -34,6 +40,9 @@ final Map<String, EventBusError> _errorTypes = {
 /// Handler signature that can be registered to get called on [EventBusError] on the event bus.
 typedef void ErrorHandler(EventBusError error);
 
+/// Callback that get called when the client sends an event, like a reply.
+typedef void OutboundTrafficCallback();
+
 /// JS hide facade specific configuration.
 class EventBusOptions {
   static const EventBusOptions _default = const EventBusOptions();
@@ -46,11 +55,35 @@ class EventBusOptions {
   /// Enable keep alive of connection?
   final bool enablePing;
 
+  /// Traffic aware heartbeat instead of the fixed interval ping. Only used when [enablePing] is true.
+  final AdaptiveHeartbeatOptions adaptiveHeartbeat;
+
   final EventBusClosedOrReopenedCallback reopenedCallback;
   final EventBusJSOptions jsOptions;
 
+  /// Enables coalescing and caching of [EventBus.sendWithReplyAsync] requests, when present.
+  final ReplyCacheOptions replyCacheOptions;
+
+  /// Where the last working SockJS transport get remembered. It's tried first on subsequent connects and reconnects.
+  final TransportCacheMode transportCacheMode;
+
   const EventBusOptions(
-      {this.autoReconnect = true, this.autoReconnectInterval = 5000, this.reopenedCallback, this.jsOptions, this.enablePing = true});
+      {this.autoReconnect = true,
+      this.autoReconnectInterval = 5000,
+      this.reopenedCallback,
+      this.jsOptions,
+      this.enablePing = true,
+      this.adaptiveHeartbeat,
+      this.replyCacheOptions,
+      this.transportCacheMode = TransportCacheMode.NONE});
+}
+
+/// Reply as received from the wire. Shared between coalesced requests, so each of them can decode it with its own decoder.
+class _RawReply {
+  final MessageFailureJS failure;
+  final VertxMessageJS message;
+
+  _RawReply(this.failure, this.message);
 }
 
 /// Entry point to the connection API with the Vert.x SockJS event bus bridge:
@@ -77,6 +110,9 @@ class EventBus {
   /// Registry for encoders. So the responsible [JsonEncoder] must not get passed with each sent event.
   final EncoderRegistry encoderRegistry = new EncoderRegistry();
 
+  /// Registry for decoders. Counterpart of [encoderRegistry], generated codecs register their decoder here.
+  final DecoderRegistry decoderRegistry = new DecoderRegistry();
+
   final _ReconnectHandler _reconnectHandler;
 
   /// Callback, that will get called when the connection to the server got closed.
@@ -85,7 +121,23 @@ class EventBus {
   /// Handler of failures on the [EventBus]
   ErrorHandler _errorHandler;
 
-  EventBus._(this._eb, this._reconnectHandler, {this.consumerExecDelegate = _DefaultConsumerExecutionDelegate, this.options});
+  /// Coalescing layer for requests with reply. Only present when configured by [EventBusOptions.replyCacheOptions]
+  final ReplyCache<_RawReply> _replyCache;
+
+  /// Only present when configured by [EventBusOptions.adaptiveHeartbeat]
+  final Heartbeat _heartbeat;
+
+  final TransportSelector _transportSelector;
+
+  /// Handlers of the consumers of this event bus on the current connection, as the same is needed to unregister.
+  final Map<ConsumerReference, ConsumerJS> _handlerByConsumer = new Map.identity();
+
+  EventBus._(this._eb, this._reconnectHandler, this._transportSelector,
+      {this.consumerExecDelegate = _DefaultConsumerExecutionDelegate, this.options})
+      : _replyCache = options?.replyCacheOptions != null ? new ReplyCache(options.replyCacheOptions) : null,
+        _heartbeat = options != null && options.enablePing && options.adaptiveHeartbeat != null
+            ? new Heartbeat(options.adaptiveHeartbeat)
+            : null;
 
   /// Starts a new [EventBus] instance.
   /// Returns [Future] which will be called when the event bus becomes ready.
@@ -93,34 +145,43 @@ class EventBus {
       {ConsumerExecutionDelegate consumerExecDelegate, EventBusOptions options = EventBusOptions._default}) {
     Completer<EventBus> completer = new Completer();
     try {
+      TransportSelector transportSelector = new TransportSelector(options.transportCacheMode);
       // Start event bus
-      EventBusJS impl = new EventBusJS(url, options?.jsOptions);
-      impl.onopen = allowInterop(() {
+      transportSelector.open(url, options?.jsOptions).then((EventBusJS impl) {
+        if (impl == null) {
+          _log.warning("Vertx event bus closed before it was open");
+          completer.completeError(new StateError("Vertx event bus on $url closed before it was open"));
+          return;
+        }
         try {
           // Configure reconnection
           _ReconnectHandler reconnectHandler = null;
           if (options.autoReconnect) {
-            reconnectHandler = new _ReconnectHandler(options, url);
+            reconnectHandler = new _ReconnectHandler(options, url, transportSelector);
           }
 
-          EventBus facade = new EventBus._(impl, reconnectHandler, consumerExecDelegate: consumerExecDelegate, options: options);
+          EventBus facade = new EventBus._(impl, reconnectHandler, transportSelector,
+              consumerExecDelegate: consumerExecDelegate, options: options);
 
           if (options.autoReconnect) {
             reconnectHandler.facade = facade;
           }
 
+          facade._registerReplyCacheInvalidation();
+
           // May enables ping
-          impl.pingEnabled(options.enablePing);
+          facade._startPing(impl);
           impl.onclose = allowInterop((SimpleEventImpl e) {
             facade._callOnClose();
           });
 
           _log.finest("Vertx event bus started");
           completer.complete(facade);
-        } catch (e) {
-          _log.severe("Failed to start Vert.x event bus");
+        } catch (e, st) {
+          _log.severe("Failed to start Vert.x event bus", e, st);
+          completer.completeError(e, st);
         }
-      });
+      }, onError: completer.completeError);
     } catch (e, st) {
       completer.completeError(e, st);
     }
@@ -136,6 +197,7 @@ class EventBus {
   /// Calls the on close callbacks with the [ConsumerExecutionDelegate]
   void _callOnClose() {
     _log.warning("Vertx event bus closed");
+    _heartbeat?.stop();
     consumerExecDelegate(() {
       if (_onCloseCallback != null) {
         _onCloseCallback();
@@ -155,18 +217,40 @@ class EventBus {
   }
 
   /// Close the underlying event bus
-  void close() => _eb.close();
+  void close() {
+    _heartbeat?.stop();
+    _ConsumerRegistry.instance.consumers.removeWhere((ConsumerReference consumerRef) => identical(consumerRef._eb, this));
+    _handlerByConsumer.clear();
+    _eb.close();
+  }
+
+  /// Enables ping on that connection. Either the fixed interval ping of [EventBusJS] or the adaptive heartbeat.
+  void _startPing(EventBusJS eb) {
+    if (_heartbeat != null) {
+      _heartbeat.start(eb);
+    } else {
+      eb.pingEnabled(options.enablePing);
+    }
+  }
+
+  /// Notifies the heartbeat about sent events
+  void _outbound() => _heartbeat?.outbound();
+
+  /// Notifies the heartbeat about received events
+  void _inbound() => _heartbeat?.inbound();
 
   /// Sends an event over the bus to that [address] with this [body] and [headers].
   void send(String address, {Object body, Map<String, String> headers}) {
     Object encoded = encodeBody(encoderRegistry, body);
     _eb.send(address, encoded, encodeHeader(headers), null);
+    _outbound();
   }
 
   /// Like [send] but publishes and no reply possible.
   void publish(String address, {Object body, Map<String, String> headers}) {
     Object encoded = encodeBody(encoderRegistry, body);
     _eb.publish(address, encoded, encodeHeader(headers));
+    _outbound();
   }
 
   /// Sends an event over the bus to that [address] with this [body] and [headers].
@@ -176,18 +260,35 @@ class EventBus {
     Object encoded = encodeBody(encoderRegistry, body);
 
     _eb.send(address, encoded, encodeHeader(headers), allowInterop((MessageFailureJS failure, [VertxMessageJS msg]) {
+      _inbound();
       try {
-        executeConsumer(consumerExecDelegate, consumer,
-            new AsyncResult(failure, failure == null ? new VertxMessage(msg, consumerExecDelegate, encoderRegistry, decoder) : null));
+        executeConsumer(
+            consumerExecDelegate,
+            consumer,
+            new AsyncResult(
+                failure, failure == null ? new VertxMessage(msg, consumerExecDelegate, encoderRegistry, decoder, _outbound) : null));
       } catch (e, st) {
         _log.severe("Failed to execute reply consumer for event on initial address $address", e, st);
       }
     }));
+    _outbound();
   }
 
   /// Like [sendWithReply] but with use of async / await instead of a [Consumer]. So the returned [Future] get called when the
   /// reply was received.
+  ///
+  /// When [EventBusOptions.replyCacheOptions] covers that [address], identical requests in flight share one request over the wire
+  /// and succeeded replies get served from the cache until their time to live expires.
   Future<AsyncResult> sendWithReplyAsync(String address, {Object body, Map<String, String> headers, EventBusBodyDecoder decoder}) async {
+    if (_replyCache != null && _replyCache.handles(address)) {
+      Object encoded = encodeBody(encoderRegistry, body);
+      String key = _replyCache.keyOf(address, encoded, headers);
+      _RawReply reply = await _replyCache.lookup(address, key, () => _sendForRawReply(address, encoded, headers),
+          (_RawReply reply) => reply.failure == null);
+      return new AsyncResult(reply.failure,
+          reply.failure == null ? new VertxMessage.shared(reply.message, consumerExecDelegate, encoderRegistry, decoder) : null);
+    }
+
     Completer<AsyncResult> completer = new Completer();
 
     try {
@@ -198,6 +299,32 @@ class EventBus {
     return completer.future;
   }
 
+  /// Sends the already encoded body and completes with the reply, as it was received from the wire.
+  Future<_RawReply> _sendForRawReply(String address, Object encoded, Map<String, String> headers) {
+    Completer<_RawReply> completer = new Completer();
+    _eb.send(address, encoded, encodeHeader(headers), allowInterop((MessageFailureJS failure, [VertxMessageJS msg]) {
+      _inbound();
+      completer.complete(new _RawReply(failure, msg));
+    }));
+    _outbound();
+    return completer.future;
+  }
+
+  /// Registers the consumer for invalidations of cached replies, when configured.
+  void _registerReplyCacheInvalidation() {
+    String invalidationAddress = _replyCache?.options?.invalidationAddress;
+    if (invalidationAddress != null) {
+      consumer(invalidationAddress, (VertxMessage msg) {
+        Object address = msg.body;
+        if (address == null || address.toString().isEmpty) {
+          _replyCache.invalidateAll();
+        } else {
+          _replyCache.invalidate(address.toString());
+        }
+      });
+    }
+  }
+
   /// Register a consumer for events on that [address].
   ConsumerReference consumer(String address, Consumer<VertxMessage> consumer, {EventBusBodyDecoder decoder}) {
     ConsumerReference consumerRef = _consumer(address, consumer, decoder: decoder);
@@ -207,24 +334,54 @@ class EventBus {
 
   /// Internal registry delegation to create a consumer and apply him to the [_ConsumerRegistry] in two steps
   ConsumerReference _consumer(String address, Consumer<VertxMessage> consumer, {EventBusBodyDecoder decoder}) {
-    _eb.registerHandler(address, allowInterop((dynamic d, VertxMessageJS msg) {
+    ConsumerReference consumerRef = new ConsumerReference(consumer, address, this, decoder);
+    _handlerByConsumer[consumerRef] = _registerHandler(address, consumer, decoder);
+    return consumerRef;
+  }
+
+  /// Registers the [consumer] on the current connection. Returns the javascript handler, as the same is needed to unregister.
+  ConsumerJS _registerHandler(String address, Consumer<VertxMessage> consumer, EventBusBodyDecoder decoder) {
+    ConsumerJS handler = allowInterop((dynamic d, VertxMessageJS msg) {
+      _inbound();
       try {
-        executeConsumer(consumerExecDelegate, consumer, new VertxMessage(msg, consumerExecDelegate, encoderRegistry, decoder));
+        executeConsumer(consumerExecDelegate, consumer, new VertxMessage(msg, consumerExecDelegate, encoderRegistry, decoder, _outbound));
       } catch (e, st) {
         _log.severe("Failed to execute consumer for event on initial address $address", e, st);
       }
-    }));
-    return new ConsumerReference(consumer, address, this, decoder);
+    });
+    _eb.registerHandler(address, handler);
+    _outbound();
+    return handler;
   }
 
   void _unregisterConsumer(ConsumerReference consumerRef) {
     _log.finest("Vertx consumer unregistered on ${consumerRef.address}");
-    _eb.unregisterHandler(consumerRef.address);
+    // The javascript event bus ignores the unregistration without the handler
+    ConsumerJS handler = _handlerByConsumer.remove(consumerRef);
+    if (open && handler != null) {
+      _eb.unregisterHandler(consumerRef.address, null, handler);
+    }
+    _outbound();
     _ConsumerRegistry.instance.removeConsumer(consumerRef);
   }
 
   /// Returns [true] when the [EventBusJS] is connected. Otherwise [false]
   bool get open => _eb?.state == EventBusState.kOpen;
+
+  /// Milliseconds it took to open the current connection, from connect (or reconnect try) until open.
+  int get lastOpenMillis => _transportSelector.lastOpenMillis;
+
+  /// True when the current connection was opened with the remembered transport of the last connection, so without negotiation.
+  bool get lastOpenCached => _transportSelector.lastOpenCached;
+
+  /// Count of the registered [Consumer] over all open [EventBus] instances.
+  int get consumerCount => _ConsumerRegistry.instance.consumers.length;
+
+  /// Count of the addresses with at least one consumer on the current connection.
+  int get handlerAddressCount => objectKeys(_eb.handlers).length;
+
+  /// Count of the sent events they still wait for their reply.
+  int get pendingReplyCount => objectKeys(_eb.replyHandlers).length;
 }
 
 /// Delegator for the execution of consumers. This can be helpful to execute consumers within a specific [Zone] or [NgZone] for example.
@@ -295,9 +452,16 @@ class _ReconnectHandler {
 
   final String url;
 
+  /// Shared with the [EventBus], so the reconnect tries the transport of the last connection first.
+  final TransportSelector transportSelector;
+
   Timer reconnectTimer;
 
-  _ReconnectHandler(this.options, this.url);
+  /// A single try may takes longer than the interval, as the cached transport and the full negotiation are tried one after
+  /// the other.
+  bool _tryInFlight = false;
+
+  _ReconnectHandler(this.options, this.url, this.transportSelector);
 
   /// Starts to try to establish a [SockJSImpl] connection.
   startToReconnect() async {
@@ -308,7 +472,17 @@ class _ReconnectHandler {
       facade._eb.close();
 
       reconnectTimer = new Timer.periodic(new Duration(milliseconds: options.autoReconnectInterval), (Timer timer) async {
-        EventBusJS reconnected = await tryToReconnect();
+        // Tries must not overlap
+        if (_tryInFlight) {
+          return;
+        }
+        EventBusJS reconnected;
+        _tryInFlight = true;
+        try {
+          reconnected = await tryToReconnect();
+        } finally {
+          _tryInFlight = false;
+        }
         if (reconnected != null) {
           // first ... stop the timer
           timer.cancel();
@@ -331,7 +505,7 @@ class _ReconnectHandler {
       facade._eb = reconnected;
 
       // May enables ping
-      reconnected.pingEnabled(options.enablePing);
+      facade._startPing(reconnected);
 
       // Reset the on close handler
       reconnected.onclose = allowInterop((SimpleEventImpl e) {
@@ -349,10 +523,11 @@ class _ReconnectHandler {
         facade.onError(facade._errorHandler);
       }
 
-      // Reattach any previous consumers
-      _ConsumerRegistry.instance.consumers.forEach((ConsumerReference consumerRef) {
+      // Reattach any previous consumers of this event bus
+      facade._handlerByConsumer.keys.toList().forEach((ConsumerReference consumerRef) {
         _log.fine("Reregister consumer on address: ${consumerRef.address}");
-        facade._consumer(consumerRef.address, consumerRef.consumer);
+        facade._handlerByConsumer[consumerRef] =
+            facade._registerHandler(consumerRef.address, consumerRef.consumer, consumerRef.decoder);
       });
 
       // Finally call reopened connection callback
@@ -368,24 +543,15 @@ class _ReconnectHandler {
 
   /// Single reconnection try
   Future<EventBusJS> tryToReconnect() async {
-    Completer<EventBusJS> completer = new Completer();
-
     try {
-      EventBusJS newEbConnection = new EventBusJS(url, options.jsOptions);
-      newEbConnection.onopen = allowInterop(() {
-        // Ensure is open event
-        completer.complete(newEbConnection);
-      });
-
-      // Finish the completer anyway
-      newEbConnection.onclose = allowInterop((SimpleEventImpl e) {
+      EventBusJS newEbConnection = await transportSelector.open(url, options.jsOptions);
+      if (newEbConnection == null) {
         _log.fine("reconnect try failed");
-        completer.complete();
-      });
+      }
+      return newEbConnection;
     } catch (e, st) {
       _log.fine("Error during reconnect", e, st);
+      return null;
     }
-
-    return completer.future;
   }
 }
@@ -0,0 +1,59 @@
+package ch.sourcemotion.vertx.dart;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects latencies in nanoseconds, from several threads, and provides their percentiles.
+ *
+ * @author Michel Werren
+ */
+public class LatencyRecorder {
+  private long[] latencies = new long[1024];
+
+  private int count;
+
+
+  public synchronized void record(long nanos) {
+    if (count == latencies.length) {
+      latencies = Arrays.copyOf(latencies, count * 2);
+    }
+    latencies[count++] = nanos;
+  }
+
+
+  public synchronized int count() {
+    return count;
+  }
+
+
+  /**
+   * @param percentile 0 - 100
+   * @return Latency in nanoseconds, 0 when nothing was recorded.
+   */
+  public synchronized long percentile(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    Arrays.sort(latencies, 0, count);
+    final int index = (int) Math.ceil(percentile / 100 * count) - 1;
+    return latencies[Math.max(0, Math.min(count - 1, index))];
+  }
+
+
+  public synchronized void reset() {
+    count = 0;
+  }
+
+
+  @Override
+  public String toString() {
+    return "count=" + count() + ", p50=" + micros(percentile(50)) + "us, p99=" + micros(percentile(99)) + "us, max=" +
+        micros(percentile(100)) + "us";
+  }
+
+
+  private static long micros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+}
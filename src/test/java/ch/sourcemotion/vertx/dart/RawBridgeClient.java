@@ -0,0 +1,163 @@
+package ch.sourcemotion.vertx.dart;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.WebSocket;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.UUID;
+
+/**
+ * Event bus bridge client for server side tests. Connects over the raw websocket transport of SockJS, or as SockJS session over
+ * the websocket transport, and speaks the same protocol like vertx-eventbus.js, so no browser is needed.
+ *
+ * @author Michel Werren
+ */
+public class RawBridgeClient {
+  private final HttpClient httpClient;
+
+  private final WebSocket webSocket;
+
+  /**
+   * True for a SockJS session, its messages are framed as JSON array of strings.
+   */
+  private final boolean session;
+
+  private Handler<JsonObject> frameHandler;
+
+
+  private RawBridgeClient(HttpClient httpClient, WebSocket webSocket, boolean session) {
+    this.httpClient = httpClient;
+    this.webSocket = webSocket;
+    this.session = session;
+    // The raw websocket transport of the bridge writes binary messages
+    webSocket.handler(data -> {
+      if (frameHandler == null) {
+        return;
+      }
+      if (!session) {
+        frameHandler.handle(data.toJsonObject());
+      } else if (data.length() > 0 && data.getByte(0) == 'a') {
+        // Other SockJS frames are open, heartbeat and close
+        new JsonArray(data.getString(1, data.length())).forEach(m -> frameHandler.handle(new JsonObject((String) m)));
+      }
+    });
+  }
+
+
+  /**
+   * Connects to the bridge over the raw websocket transport, mounted on "/eventbus/*".
+   *
+   * @param vertx
+   * @param port
+   * @param handler
+   */
+  public static void connect(Vertx vertx, int port, Handler<AsyncResult<RawBridgeClient>> handler) {
+    connect(vertx, port, "/eventbus/websocket", false, handler);
+  }
+
+
+  /**
+   * Connects to the bridge as SockJS session over the websocket transport, mounted on "/eventbus/*".
+   *
+   * @param vertx
+   * @param port
+   * @param handler
+   */
+  public static void connectSession(Vertx vertx, int port, Handler<AsyncResult<RawBridgeClient>> handler) {
+    connect(vertx, port, "/eventbus/000/" + UUID.randomUUID() + "/websocket", true, handler);
+  }
+
+
+  private static void connect(Vertx vertx, int port, String uri, boolean session,
+                              Handler<AsyncResult<RawBridgeClient>> handler) {
+    final HttpClient httpClient = vertx.createHttpClient();
+    httpClient.websocket(port, "localhost", uri,
+        webSocket -> handler.handle(Future.succeededFuture(new RawBridgeClient(httpClient, webSocket, session))),
+        cause -> {
+          httpClient.close();
+          handler.handle(Future.failedFuture(cause));
+        });
+  }
+
+
+  public RawBridgeClient send(String address, Object body) {
+    return write(new JsonObject().put("type", "send").put("address", address).put("body", body));
+  }
+
+
+  public RawBridgeClient send(String address, Object body, String replyAddress) {
+    return write(new JsonObject().put("type", "send").put("address", address).put("body", body)
+        .put("replyAddress", replyAddress));
+  }
+
+
+  public RawBridgeClient publish(String address, Object body) {
+    return write(new JsonObject().put("type", "publish").put("address", address).put("body", body));
+  }
+
+
+  public RawBridgeClient register(String address) {
+    return write(new JsonObject().put("type", "register").put("address", address));
+  }
+
+
+  public RawBridgeClient unregister(String address) {
+    return write(new JsonObject().put("type", "unregister").put("address", address));
+  }
+
+
+  public RawBridgeClient ping() {
+    return write(new JsonObject().put("type", "ping"));
+  }
+
+
+  /**
+   * Writes that frame as it is.
+   *
+   * @param frame
+   * @return
+   */
+  public RawBridgeClient write(JsonObject frame) {
+    webSocket.writeTextMessage(session ? new JsonArray().add(frame.encode()).encode() : frame.encode());
+    return this;
+  }
+
+
+  /**
+   * @param handler Get called for each incoming frame, like "rec" or "err".
+   * @return
+   */
+  public RawBridgeClient frameHandler(Handler<JsonObject> handler) {
+    this.frameHandler = handler;
+    return this;
+  }
+
+
+  public RawBridgeClient closeHandler(Handler<Void> handler) {
+    webSocket.closeHandler(handler);
+    return this;
+  }
+
+
+  /**
+   * @return The underlying websocket, e.g. to pause reading for a slow client simulation.
+   */
+  public WebSocket webSocket() {
+    return webSocket;
+  }
+
+
+  public void close() {
+    try {
+      webSocket.close();
+    } catch (IllegalStateException ignore) {
+      // Already closed
+    }
+    httpClient.close();
+  }
+}
@@ -0,0 +1,115 @@
+package ch.sourcemotion.vertx.dart;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Event bus bridge client for server side tests, over the SockJS XHR polling transport. Messages for the client are queued on
+ * the server until {@link #poll(Handler)} is called. So it can simulate a client on a slow link.
+ *
+ * @author Michel Werren
+ */
+public class XhrBridgeClient {
+  private final HttpClient httpClient;
+
+  private final int port;
+
+  private final String sessionPath;
+
+
+  private XhrBridgeClient(HttpClient httpClient, int port) {
+    this.httpClient = httpClient;
+    this.port = port;
+    this.sessionPath = "/eventbus/000/" + UUID.randomUUID().toString();
+  }
+
+
+  /**
+   * Opens a new session on the bridge, mounted on "/eventbus/*".
+   *
+   * @param vertx
+   * @param port
+   * @param handler
+   */
+  public static void connect(Vertx vertx, int port, Handler<AsyncResult<XhrBridgeClient>> handler) {
+    final XhrBridgeClient client = new XhrBridgeClient(vertx.createHttpClient(), port);
+    client.post("/xhr", null, res -> {
+      if (res.succeeded() && res.result().startsWith("o")) {
+        handler.handle(Future.succeededFuture(client));
+      } else {
+        client.close();
+        handler.handle(Future.failedFuture(
+            res.failed() ? res.cause() : new IllegalStateException("Unexpected open frame " + res.result())));
+      }
+    });
+  }
+
+
+  public XhrBridgeClient register(String address, Handler<AsyncResult<Void>> handler) {
+    return write(new JsonObject().put("type", "register").put("address", address), handler);
+  }
+
+
+  /**
+   * Writes that frame as it is.
+   *
+   * @param frame
+   * @param handler
+   * @return
+   */
+  public XhrBridgeClient write(JsonObject frame, Handler<AsyncResult<Void>> handler) {
+    post("/xhr_send", new JsonArray().add(frame.encode()).encode(),
+        res -> handler.handle(res.succeeded() ? Future.succeededFuture() : Future.failedFuture(res.cause())));
+    return this;
+  }
+
+
+  /**
+   * Polls the frames they are queued on the server for this session.
+   *
+   * @param handler
+   * @return
+   */
+  public XhrBridgeClient poll(Handler<AsyncResult<List<JsonObject>>> handler) {
+    post("/xhr", null, res -> {
+      if (res.failed()) {
+        handler.handle(Future.failedFuture(res.cause()));
+        return;
+      }
+      final List<JsonObject> frames = new ArrayList<>();
+      final String body = res.result();
+      if (body.startsWith("a")) {
+        new JsonArray(body.substring(1)).forEach(frame -> frames.add(new JsonObject((String) frame)));
+      }
+      handler.handle(Future.succeededFuture(frames));
+    });
+    return this;
+  }
+
+
+  private void post(String path, String body, Handler<AsyncResult<String>> handler) {
+    final HttpClientRequest request = httpClient.post(port, "localhost", sessionPath + path, response ->
+        response.bodyHandler(buffer -> handler.handle(Future.succeededFuture(buffer.toString()))));
+    request.exceptionHandler(cause -> handler.handle(Future.failedFuture(cause)));
+    if (body != null) {
+      request.end(body);
+    } else {
+      request.end();
+    }
+  }
+
+
+  public void close() {
+    httpClient.close();
+  }
+}
@@ -0,0 +1,49 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Trie over address prefixes. Each prefix holds the ordinal of the first rule with that prefix, so a lookup returns the
+ * first rule whose prefix matches the address.
+ *
+ * @author Michel Werren
+ */
+class AddressPrefixTrie {
+  static final int NONE = Integer.MAX_VALUE;
+
+  private final Node root = new Node();
+
+
+  void add(String prefix, int ordinal) {
+    Node node = root;
+    for (int i = 0; i < prefix.length(); i++) {
+      node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Node());
+    }
+    node.ordinal = Math.min(node.ordinal, ordinal);
+  }
+
+
+  /**
+   * @param address
+   * @return The lowest ordinal of all prefixes of that address, {@link #NONE} when no prefix matches.
+   */
+  int lookup(String address) {
+    Node node = root;
+    int ordinal = node.ordinal;
+    for (int i = 0; i < address.length(); i++) {
+      node = node.children.get(address.charAt(i));
+      if (node == null) {
+        break;
+      }
+      ordinal = Math.min(ordinal, node.ordinal);
+    }
+    return ordinal;
+  }
+
+
+  private static final class Node {
+    final Map<Character, Node> children = new HashMap<>(4);
+    int ordinal = NONE;
+  }
+}
@@ -0,0 +1,26 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.ext.web.handler.sockjs.BridgeEvent;
+
+/**
+ * Step of the bridge event handling they needs to decide asynchronously, e.g. to authorise the user. Composed by {@link
+ * BridgeEventChain}.
+ *
+ * @author Michel Werren
+ */
+@FunctionalInterface
+public interface AsyncBridgeEventInterceptor {
+
+  /**
+   * Called for each bridge event. Must not complete the event, this is done by the chain.
+   *
+   * @param event
+   * @param decision Must get called exactly once. With <code>false</code> when the event should get rejected, the bridge
+   *                 replies then "rejected" to the client. Failed to reject with the message of the cause as error instead,
+   *                 like "access_denied" of the own checks of the bridge. Events without error reply of the bridge are
+   *                 rejected as on <code>false</code>, see {@link BridgeEventChain}.
+   */
+  void intercept(BridgeEvent event, Handler<AsyncResult<Boolean>> decision);
+}
@@ -0,0 +1,93 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.bridge.BridgeEventType;
+import io.vertx.ext.web.handler.sockjs.BridgeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bridge event handler for {@link io.vertx.ext.web.handler.sockjs.SockJSHandler#bridge(io.vertx.ext.web.handler.sockjs.BridgeOptions,
+ * Handler)} they calls several {@link BridgeEventInterceptor} in the order they were added. The event get rejected by the
+ * first interceptor they returns <code>false</code>, the remaining are not called anymore.
+ * <p>
+ * An asynchronous interceptor can also reject with an error of its own. For frames of the client (send, publish, register
+ * and unregister) the chain replies that error and leaves the event incomplete. On completion with <code>false</code> the
+ * bridge would reply its generic "rejected" too, and on a failed completion it would log an error for each rejected frame.
+ * Nothing in the bridge waits on the event: no timer, no resources, the frame is only dropped. So the incomplete event is
+ * just collected. For all other events the bridge has no error reply, they are completed with <code>false</code>, so the
+ * bridge rejects them as usual (e.g. it closes the socket on a rejected creation).
+ *
+ * @author Michel Werren
+ */
+public class BridgeEventChain implements Handler<BridgeEvent> {
+  private final List<AsyncBridgeEventInterceptor> interceptors = new ArrayList<>();
+
+
+  public BridgeEventChain add(BridgeEventInterceptor interceptor) {
+    interceptors.add((event, decision) -> decision.handle(Future.succeededFuture(interceptor.intercept(event))));
+    return this;
+  }
+
+
+  /**
+   * The next interceptor is called after the decision of that one.
+   *
+   * @param interceptor
+   * @return
+   */
+  public BridgeEventChain addAsync(AsyncBridgeEventInterceptor interceptor) {
+    interceptors.add(interceptor);
+    return this;
+  }
+
+
+  @Override
+  public void handle(BridgeEvent event) {
+    intercept(event, 0);
+  }
+
+
+  private void intercept(BridgeEvent event, int index) {
+    if (index == interceptors.size()) {
+      event.complete(true);
+      return;
+    }
+    interceptors.get(index).intercept(event, decision -> {
+      if (decision.failed()) {
+        if (repliesError(event.type())) {
+          // Same envelope like the bridge replies its errors. Left incomplete, see class doc
+          event.socket().write(Buffer.buffer(
+              new JsonObject().put("type", "err").put("body", decision.cause().getMessage()).encode()));
+        } else {
+          event.complete(false);
+        }
+      } else if (decision.result()) {
+        intercept(event, index + 1);
+      } else {
+        event.complete(false);
+      }
+    });
+  }
+
+
+  /**
+   * @param type
+   * @return True for the events the bridge replies an error on rejection.
+   */
+  private static boolean repliesError(BridgeEventType type) {
+    switch (type) {
+      case SEND:
+      case PUBLISH:
+      case REGISTER:
+      case UNREGISTER:
+        return true;
+      default:
+        return false;
+    }
+  }
+}
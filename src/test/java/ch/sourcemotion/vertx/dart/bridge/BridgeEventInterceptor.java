@@ -0,0 +1,20 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import io.vertx.ext.web.handler.sockjs.BridgeEvent;
+
+/**
+ * Single step of the bridge event handling, composed by {@link BridgeEventChain}.
+ *
+ * @author Michel Werren
+ */
+@FunctionalInterface
+public interface BridgeEventInterceptor {
+
+  /**
+   * Called for each bridge event. Must not complete the event, this is done by the chain.
+   *
+   * @param event
+   * @return <code>false</code> when the event should get rejected. Otherwise <code>true</code>
+   */
+  boolean intercept(BridgeEvent event);
+}
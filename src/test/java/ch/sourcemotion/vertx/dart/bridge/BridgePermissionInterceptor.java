@@ -0,0 +1,206 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.bridge.PermittedOptions;
+import io.vertx.ext.web.handler.sockjs.BridgeEvent;
+import io.vertx.ext.web.handler.sockjs.BridgeOptions;
+import io.vertx.ext.web.handler.sockjs.SockJSSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checks the permitted addresses with {@link PermittedAddressIndex} instead the linear scan of the bridge. Especially for
+ * large rule sets, as the bridge iterates over all rules for each inbound and outbound message.
+ * <p>
+ * {@link #applyTo(BridgeOptions)} permits any address on the bridge itself, so its own scan ends on the first rule. The
+ * configured rules are checked by this interceptor on the same events as the bridge would do. Replies pass without check,
+ * like on the bridge. Rejected messages, registrations and unregistrations get the same errors as from the bridge:
+ * "access_denied", "not_logged_in" or "auth_error". Outbound messages are not delivered silently.
+ *
+ * @author Michel Werren
+ */
+public class BridgePermissionInterceptor implements AsyncBridgeEventInterceptor {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BridgePermissionInterceptor.class);
+
+  private static final String ACCESS_DENIED = "access_denied";
+
+  private static final String NOT_LOGGED_IN = "not_logged_in";
+
+  private static final String AUTH_ERROR = "auth_error";
+
+  private final Vertx vertx;
+
+  private final PermittedAddressIndex inbound;
+
+  private final PermittedAddressIndex outbound;
+
+  private final long replyTimeout;
+
+  /**
+   * Reply addresses per socket they pass without check, until the reply timeout.
+   */
+  private final Map<SockJSSocket, Set<String>> replyAddresses = new ConcurrentHashMap<>();
+
+
+  /**
+   * @param vertx
+   * @param inboundPermitted  Rules for messages from the clients.
+   * @param outboundPermitted Rules for registrations and messages to the clients.
+   * @param replyTimeout      Same as {@link BridgeOptions#getReplyTimeout()}.
+   */
+  public BridgePermissionInterceptor(Vertx vertx, List<PermittedOptions> inboundPermitted,
+                                     List<PermittedOptions> outboundPermitted, long replyTimeout) {
+    this.vertx = vertx;
+    this.inbound = new PermittedAddressIndex(inboundPermitted);
+    this.outbound = new PermittedAddressIndex(outboundPermitted);
+    this.replyTimeout = replyTimeout;
+  }
+
+
+  /**
+   * Takes over the permitted options of the bridge.
+   *
+   * @param vertx
+   * @param options
+   * @return
+   */
+  public static BridgePermissionInterceptor of(Vertx vertx, BridgeOptions options) {
+    return new BridgePermissionInterceptor(vertx, options.getInboundPermitteds(), options.getOutboundPermitteds(),
+        options.getReplyTimeout());
+  }
+
+
+  /**
+   * Replaces the permitted options of the bridge by a single rule they permits all.
+   *
+   * @param options
+   * @return
+   */
+  public BridgeOptions applyTo(BridgeOptions options) {
+    options.getInboundPermitteds().clear();
+    options.getOutboundPermitteds().clear();
+    return options.addInboundPermitted(new PermittedOptions().setAddressRegex(".*"))
+        .addOutboundPermitted(new PermittedOptions().setAddressRegex(".*"))
+        .setReplyTimeout(replyTimeout);
+  }
+
+
+  @Override
+  public void intercept(BridgeEvent event, Handler<AsyncResult<Boolean>> decision) {
+    final SockJSSocket socket = event.socket();
+    final JsonObject message = event.getRawMessage();
+    switch (event.type()) {
+      case SOCKET_CLOSED:
+        replyAddresses.remove(socket);
+        decision.handle(Future.succeededFuture(true));
+        break;
+      case SEND:
+      case PUBLISH:
+        if (isReply(socket, message.getString("address"))) {
+          awaitReply(socket, message.getString("replyAddress"));
+          decision.handle(Future.succeededFuture(true));
+        } else {
+          check(socket, inbound.match(message.getString("address"), message.getValue("body")), error -> {
+            if (error == null) {
+              awaitReply(socket, message.getString("replyAddress"));
+              decision.handle(Future.succeededFuture(true));
+            } else {
+              decision.handle(Future.failedFuture(error));
+            }
+          });
+        }
+        break;
+      case REGISTER:
+      case UNREGISTER:
+        // The bridge checks no authority on (un)registration
+        if (outbound.match(message.getString("address"), null) != null) {
+          decision.handle(Future.succeededFuture(true));
+        } else {
+          decision.handle(Future.failedFuture(ACCESS_DENIED));
+        }
+        break;
+      case RECEIVE:
+        if (isReply(socket, message.getString("address"))) {
+          awaitReply(socket, message.getString("replyAddress"));
+          decision.handle(Future.succeededFuture(true));
+        } else {
+          check(socket, outbound.match(message.getString("address"), message.getValue("body")), error -> {
+            if (error == null) {
+              awaitReply(socket, message.getString("replyAddress"));
+            }
+            decision.handle(Future.succeededFuture(error == null));
+          });
+        }
+        break;
+      default:
+        decision.handle(Future.succeededFuture(true));
+    }
+  }
+
+
+  /**
+   * @param socket
+   * @param match
+   * @param result Called with the error like the bridge would reply it, <code>null</code> when permitted.
+   */
+  private void check(SockJSSocket socket, PermittedOptions match, Handler<String> result) {
+    if (match == null) {
+      result.handle(ACCESS_DENIED);
+    } else if (match.getRequiredAuthority() == null) {
+      result.handle(null);
+    } else {
+      authorise(socket, match.getRequiredAuthority(), result);
+    }
+  }
+
+
+  /**
+   * Checks the authority on the user of that socket, like the bridge does. Shared with {@link LocalFanOutPublisher}.
+   *
+   * @param socket
+   * @param authority
+   * @param result    Called with the error like the bridge would reply it, <code>null</code> when authorised.
+   */
+  static void authorise(SockJSSocket socket, String authority, Handler<String> result) {
+    final User user = socket.webUser();
+    if (user == null) {
+      result.handle(NOT_LOGGED_IN);
+      return;
+    }
+    // The bridge calls the deprecated isAuthorised, its default delegates to this one
+    user.isAuthorized(authority, authorised -> {
+      if (authorised.failed()) {
+        LOGGER.error("Failed to authorise " + authority, authorised.cause());
+        result.handle(AUTH_ERROR);
+      } else {
+        result.handle(authorised.result() ? null : ACCESS_DENIED);
+      }
+    });
+  }
+
+
+  private boolean isReply(SockJSSocket socket, String address) {
+    final Set<String> addresses = replyAddresses.get(socket);
+    return addresses != null && addresses.remove(address);
+  }
+
+
+  private void awaitReply(SockJSSocket socket, String replyAddress) {
+    if (replyAddress == null) {
+      return;
+    }
+    final Set<String> addresses = replyAddresses.computeIfAbsent(socket, s -> ConcurrentHashMap.newKeySet());
+    addresses.add(replyAddress);
+    vertx.setTimer(replyTimeout, id -> addresses.remove(replyAddress));
+  }
+}
@@ -0,0 +1,139 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import ch.sourcemotion.vertx.dart.RawBridgeClient;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.bridge.PermittedOptions;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.sockjs.BridgeOptions;
+import io.vertx.ext.web.handler.sockjs.SockJSHandler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * @author Michel Werren
+ */
+@RunWith(VertxUnitRunner.class)
+public class BridgePermissionInterceptorTest {
+  private static final int PORT = 9003;
+
+  @Rule
+  public RunTestOnContext serverRule = new RunTestOnContext();
+
+  private Vertx vertx;
+
+
+  @Before
+  public void setUp(TestContext context) throws Exception {
+    vertx = serverRule.vertx();
+    vertx.eventBus().consumer("echo", msg -> msg.reply(msg.body()));
+
+    final BridgeOptions options = new BridgeOptions()
+        .addInboundPermitted(new PermittedOptions().setAddress("echo"))
+        .addInboundPermitted(new PermittedOptions().setAddressRegex("allowed\\..*"))
+        .addInboundPermitted(new PermittedOptions().setAddress("admin").setRequiredAuthority("admin"))
+        .addOutboundPermitted(new PermittedOptions().setAddressRegex("news\\.public\\..*"))
+        .addOutboundPermitted(new PermittedOptions().setAddress("news.mixed")
+            .setMatch(new JsonObject().put("visibility", "public")));
+    final BridgePermissionInterceptor permissions = BridgePermissionInterceptor.of(vertx, options);
+
+    final SockJSHandler sockJSHandler = SockJSHandler.create(vertx);
+    sockJSHandler.bridge(permissions.applyTo(options), new BridgeEventChain().addAsync(permissions));
+
+    final Router router = Router.router(vertx);
+    router.route("/eventbus/*").handler(sockJSHandler);
+
+    final HttpServer httpServer = vertx.createHttpServer(
+        new HttpServerOptions().setHost("localhost").setPort(PORT));
+    httpServer.requestHandler(router::accept).listen(PORT, context.asyncAssertSuccess());
+  }
+
+
+  /**
+   * Permitted send get its reply, others are rejected with the same error like from the bridge.
+   *
+   * @param context
+   */
+  @Test(timeout = 10000)
+  public void inbound(TestContext context) {
+    final Async reply = context.async();
+    final Async rejected = context.async();
+
+    RawBridgeClient.connect(vertx, PORT, context.asyncAssertSuccess(client -> {
+      client.frameHandler(frame -> {
+        if ("err".equals(frame.getString("type"))) {
+          context.assertEquals("access_denied", frame.getString("body"));
+          rejected.complete();
+        } else {
+          context.assertEquals("reply-1", frame.getString("address"));
+          context.assertEquals("ping", frame.getString("body"));
+          reply.complete();
+        }
+      });
+      client.send("echo", "ping", "reply-1");
+      client.send("forbidden", "ping");
+    }));
+  }
+
+
+  /**
+   * Address with required authority, but the socket has no user.
+   *
+   * @param context
+   */
+  @Test(timeout = 10000)
+  public void notLoggedIn(TestContext context) {
+    final Async rejected = context.async();
+
+    RawBridgeClient.connect(vertx, PORT, context.asyncAssertSuccess(client -> {
+      client.frameHandler(frame -> {
+        context.assertEquals("err", frame.getString("type"));
+        context.assertEquals("not_logged_in", frame.getString("body"));
+        rejected.complete();
+      });
+      client.send("admin", "ping");
+    }));
+  }
+
+
+  /**
+   * Only the permitted registration receives, and only the messages they match the structure.
+   *
+   * @param context
+   */
+  @Test(timeout = 10000)
+  public void outbound(TestContext context) {
+    final Async rejected = context.async();
+    final Async received = context.async(2);
+
+    RawBridgeClient.connect(vertx, PORT, context.asyncAssertSuccess(client -> {
+      client.frameHandler(frame -> {
+        if ("err".equals(frame.getString("type"))) {
+          context.assertEquals("access_denied", frame.getString("body"));
+          rejected.complete();
+          return;
+        }
+        final JsonObject body = frame.getJsonObject("body");
+        context.assertEquals("public", body.getString("visibility"));
+        received.countDown();
+      });
+      client.register("news.secret");
+      client.register("news.public.sport");
+      client.register("news.mixed");
+
+      vertx.setTimer(500, id -> {
+        vertx.eventBus().publish("news.mixed", new JsonObject().put("visibility", "private"));
+        vertx.eventBus().publish("news.mixed", new JsonObject().put("visibility", "public"));
+        vertx.eventBus().publish("news.public.sport", new JsonObject().put("visibility", "public"));
+      });
+    }));
+  }
+}
@@ -0,0 +1,312 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.http.WebSocketFrame;
+import io.vertx.core.http.impl.FrameType;
+import io.vertx.core.http.impl.ws.WebSocketFrameImpl;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.bridge.PermittedOptions;
+import io.vertx.ext.web.handler.sockjs.BridgeEvent;
+import io.vertx.ext.web.handler.sockjs.BridgeOptions;
+import io.vertx.ext.web.handler.sockjs.SockJSSocket;
+import io.vertx.ext.web.handler.sockjs.impl.JsonCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Publishes to the bridged sockets of this node directly, with the frame encoded once per publish. Not a replacement for
+ * <code>eventBus().publish</code>, only for local sockets they are registered over this bridge.
+ * <p>
+ * A publish over the event bus is delivered by the bridge to a consumer per socket, each of them builds and encodes its own
+ * envelope and raises a RECEIVE event. For addresses with many subscribers and big bodies, this multiplies the CPU and
+ * garbage by the subscriber count. Here the outbound rule is checked once per publish and the same bytes are written to all
+ * sockets registered on the address. The raw websocket transport gets the envelope, a SockJS session over websocket the
+ * text frame the session would write, both are shared by all sockets. Only polling sessions still frame it per socket. The
+ * required authority of the rule is still checked per socket. See {@link LocalFanOutPublisherBenchmark}.
+ * <p>
+ * The message never enters the event bus: Consumers on the server, other cluster nodes and the sockets of other bridges
+ * don't get it. It also bypasses the RECEIVE events of the bridge, so interceptors on them like {@link SlowConsumerGuard},
+ * the traffic recorder or the outbound check of {@link BridgePermissionInterceptor} never see it. Interceptors
+ * ahead of it in the chain still apply on the registrations, only the registrations they passed are tracked. So must be the
+ * last interceptor of the chain. Sockets with full write queue are skipped, like {@link SlowConsumerGuard.Policy#DROP}
+ * does, also SockJS sessions on a full websocket.
+ *
+ * @author Michel Werren
+ */
+public class LocalFanOutPublisher implements BridgeEventInterceptor {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LocalFanOutPublisher.class);
+
+  private final PermittedAddressIndex outbound;
+
+  private final Map<String, Set<Subscriber>> subscribersByAddress = new ConcurrentHashMap<>();
+
+  private final Map<SockJSSocket, Subscriber> subscribersBySocket = new ConcurrentHashMap<>();
+
+
+  /**
+   * @param outboundPermitted Rules for registrations and messages to the clients.
+   */
+  public LocalFanOutPublisher(List<PermittedOptions> outboundPermitted) {
+    this.outbound = new PermittedAddressIndex(outboundPermitted);
+  }
+
+
+  /**
+   * Takes over the outbound permitted options of the bridge. So must be created before
+   * {@link BridgePermissionInterceptor#applyTo(BridgeOptions)} when both are used.
+   *
+   * @param options
+   * @return
+   */
+  public static LocalFanOutPublisher of(BridgeOptions options) {
+    return new LocalFanOutPublisher(options.getOutboundPermitteds());
+  }
+
+
+  @Override
+  public boolean intercept(BridgeEvent event) {
+    final SockJSSocket socket = event.socket();
+    switch (event.type()) {
+      case REGISTER:
+        final String address = event.getRawMessage().getString("address");
+        if (address != null) {
+          final Subscriber subscriber = subscribersBySocket.computeIfAbsent(socket, this::subscriberOf);
+          // Atomic with the removal of the emptied set on unsubscribe
+          subscribersByAddress.compute(address, (a, subscribers) -> {
+            final Set<Subscriber> subscribed = subscribers == null ? ConcurrentHashMap.newKeySet() : subscribers;
+            subscribed.add(subscriber);
+            return subscribed;
+          });
+          subscriber.addresses.add(address);
+        }
+        return true;
+      case UNREGISTER:
+        final Subscriber unregistering = subscribersBySocket.get(socket);
+        if (unregistering != null) {
+          unsubscribe(unregistering, event.getRawMessage().getString("address"));
+        }
+        return true;
+      case SOCKET_CLOSED:
+        final Subscriber closed = subscribersBySocket.remove(socket);
+        if (closed != null) {
+          closed.addresses.forEach(a -> unsubscribe(closed, a));
+        }
+        return true;
+      default:
+        return true;
+    }
+  }
+
+
+  private void unsubscribe(Subscriber subscriber, String address) {
+    if (address == null) {
+      return;
+    }
+    subscribersByAddress.computeIfPresent(address, (a, subscribers) -> {
+      subscribers.remove(subscriber);
+      return subscribers.isEmpty() ? null : subscribers;
+    });
+    subscriber.addresses.remove(address);
+  }
+
+
+  /**
+   * Publishes that body to all sockets of this node registered on that address.
+   *
+   * @param address
+   * @param body
+   * @return Count of sockets the frame is written to. Without the sockets they are still authorised, see
+   * {@link #publish(String, Object, DeliveryOptions, Handler)}.
+   */
+  public int publish(String address, Object body) {
+    return publish(address, body, new DeliveryOptions());
+  }
+
+
+  /**
+   * Publishes that body with the headers of the options to all sockets of this node registered on that address.
+   *
+   * @param address
+   * @param body
+   * @param options
+   * @return Count of sockets the frame is written to. Without the sockets they are still authorised, see
+   * {@link #publish(String, Object, DeliveryOptions, Handler)}.
+   */
+  public int publish(String address, Object body, DeliveryOptions options) {
+    return publish(address, body, options, written -> {
+    });
+  }
+
+
+  /**
+   * Publishes that body with the headers of the options to all sockets of this node registered on that address.
+   *
+   * @param address
+   * @param body
+   * @param options
+   * @param writtenHandler Called with the count of sockets the frame is written to, when all sockets are authorised.
+   * @return Count of sockets the frame is written to so far.
+   */
+  public int publish(String address, Object body, DeliveryOptions options, Handler<Integer> writtenHandler) {
+    final Set<Subscriber> subscribers = subscribersByAddress.get(address);
+    if (subscribers == null) {
+      writtenHandler.handle(0);
+      return 0;
+    }
+    final PermittedOptions match = outbound.match(address, body);
+    if (match == null) {
+      LOGGER.debug("Outbound message for address {} rejected because there is no outbound match", address);
+      writtenHandler.handle(0);
+      return 0;
+    }
+
+    final String envelope = envelope(address, body, options.getHeaders()).encode();
+    final Buffer rawFrame = Buffer.buffer(envelope);
+    // Same text frame like SockJSSession.write
+    final Buffer sessionFrame = Buffer.buffer("a" + JsonCodec.encode(new Object[]{envelope}));
+    final String authority = match.getRequiredAuthority();
+    final AtomicInteger written = new AtomicInteger();
+    // One for this loop, so the handler is not called before all sockets are checked
+    final AtomicInteger pending = new AtomicInteger(1);
+    for (Subscriber subscriber : subscribers) {
+      if (subscriber.isWriteQueueFull()) {
+        continue;
+      }
+      if (authority == null) {
+        if (subscriber.write(rawFrame, sessionFrame)) {
+          written.incrementAndGet();
+        }
+        continue;
+      }
+      pending.incrementAndGet();
+      BridgePermissionInterceptor.authorise(subscriber.socket, authority, error -> {
+        if (error == null && subscriber.write(rawFrame, sessionFrame)) {
+          written.incrementAndGet();
+        }
+        if (pending.decrementAndGet() == 0) {
+          writtenHandler.handle(written.get());
+        }
+      });
+    }
+    final int writtenSoFar = written.get();
+    if (pending.decrementAndGet() == 0) {
+      writtenHandler.handle(written.get());
+    }
+    return writtenSoFar;
+  }
+
+
+  /**
+   * Same envelope like the bridge writes for a message on a registered address.
+   */
+  private static JsonObject envelope(String address, Object body, MultiMap headers) {
+    final JsonObject envelope = new JsonObject().put("type", "rec").put("address", address).put("body", body);
+    if (headers != null && !headers.isEmpty()) {
+      final JsonObject headersCopy = new JsonObject();
+      for (String name : headers.names()) {
+        final List<String> values = headers.getAll(name);
+        if (values.size() == 1) {
+          headersCopy.put(name, values.get(0));
+        } else {
+          headersCopy.put(name, values);
+        }
+      }
+      envelope.put("headers", headersCopy);
+    }
+    return envelope;
+  }
+
+
+  /**
+   * @param address
+   * @return Sockets currently registered on that address.
+   */
+  public Set<SockJSSocket> subscribers(String address) {
+    return subscribersByAddress.getOrDefault(address, Collections.emptySet()).stream().map(subscriber -> subscriber.socket)
+        .collect(Collectors.toSet());
+  }
+
+
+  /**
+   * @param socket
+   * @return Subscriber for that socket, with the websocket under it when there is one.
+   */
+  Subscriber subscriberOf(SockJSSocket socket) {
+    final ServerWebSocket websocket = TransportAccess.websocketOf(socket);
+    final Handler<WebSocketFrame> sessionFrames = websocket != null && TransportAccess.isSession(socket)
+        ? websocket::writeFrame : null;
+    return new Subscriber(socket, websocket, sessionFrames);
+  }
+
+
+  /**
+   * Socket with at least one registration.
+   */
+  static final class Subscriber {
+    final SockJSSocket socket;
+
+    /**
+     * The SockJS session writes immediately to it, so the session itself is never full.
+     */
+    final ServerWebSocket websocket;
+
+    /**
+     * Writes to the websocket under a SockJS session, bypassing the session. Null for the other transports.
+     */
+    final Handler<WebSocketFrame> sessionFrames;
+
+    final Set<String> addresses = ConcurrentHashMap.newKeySet();
+
+
+    /**
+     * @param socket
+     * @param websocket     Null when unknown or a polling transport.
+     * @param sessionFrames Null when not a SockJS session over websocket.
+     */
+    Subscriber(SockJSSocket socket, ServerWebSocket websocket, Handler<WebSocketFrame> sessionFrames) {
+      this.socket = socket;
+      this.websocket = websocket;
+      this.sessionFrames = sessionFrames;
+    }
+
+
+    boolean isWriteQueueFull() {
+      return websocket != null ? websocket.writeQueueFull() : socket.writeQueueFull();
+    }
+
+
+    /**
+     * Writes the frame of the transport. Both buffers are shared with the other subscribers, so they are not copied.
+     *
+     * @param rawFrame     The envelope, for the raw websocket and polling transports.
+     * @param sessionFrame The envelope as SockJS frame, for sessions over websocket.
+     * @return Whether written, false when the socket is closed but its SOCKET_CLOSED event not yet passed.
+     */
+    boolean write(Buffer rawFrame, Buffer sessionFrame) {
+      try {
+        // Bigger messages the websocket splits into several frames, so they get written by the session
+        if (sessionFrames == null || sessionFrame.length() > HttpServerOptions.DEFAULT_MAX_WEBSOCKET_FRAME_SIZE) {
+          socket.write(rawFrame);
+        } else {
+          sessionFrames.handle(new WebSocketFrameImpl(FrameType.TEXT, sessionFrame.getByteBuf(), true));
+        }
+        return true;
+      } catch (IllegalStateException e) {
+        return false;
+      }
+    }
+  }
+}
@@ -0,0 +1,455 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.WebSocketFrame;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.ext.auth.User;
+import io.vertx.ext.bridge.BridgeEventType;
+import io.vertx.ext.bridge.PermittedOptions;
+import io.vertx.ext.web.Session;
+import io.vertx.ext.web.handler.sockjs.BridgeEvent;
+import io.vertx.ext.web.handler.sockjs.SockJSSocket;
+import io.vertx.ext.web.handler.sockjs.impl.JsonCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU time and allocation of a single publish to all subscribers. The bridge delivery per socket (copy of the body by the
+ * event bus, outbound rule check, envelope and its encoding) compared with {@link LocalFanOutPublisher}.
+ * <p>
+ * The sockets discard the written frames. With transport "websocket", like the raw websocket transport, the buffer is
+ * written as it is, so only the work of the server until the socket is measured. With "session", a write to the socket
+ * does the same framing like a SockJS session over websocket: the buffer to a string, encoded into a JSON array and to
+ * UTF-8 for the text message. The publisher writes its shared frame to the websocket under the session instead, the setup
+ * verifies it does and that the bytes are the same. Run with {@link #main(String[])} from the test classpath, the
+ * allocation per publish is reported as "gc.alloc.rate.norm".
+ *
+ * @author Michel Werren
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalFanOutPublisherBenchmark {
+  private static final String ADDRESS = "news.all";
+
+  @Param({"100", "1000", "10000"})
+  public int subscribers;
+
+  @Param({"websocket", "session"})
+  public String transport;
+
+  private JsonObject body;
+
+  private List<DiscardingSocket> sockets;
+
+  private PermittedAddressIndexBenchmark.LinearPermittedMatcher linear;
+
+  private LocalFanOutPublisher fanOut;
+
+
+  @Setup
+  public void setUp() {
+    body = body();
+
+    final List<PermittedOptions> rules = PermittedAddressIndexBenchmark.rules(10);
+    rules.add(new PermittedOptions().setAddress(ADDRESS));
+    linear = new PermittedAddressIndexBenchmark.LinearPermittedMatcher(rules);
+    fanOut = new LocalFanOutPublisher(rules) {
+      @Override
+      Subscriber subscriberOf(SockJSSocket socket) {
+        final DiscardingSocket discarding = (DiscardingSocket) socket;
+        return new Subscriber(socket, null, discarding.session ? discarding::writeFrame : null);
+      }
+    };
+
+    sockets = new ArrayList<>(subscribers);
+    for (int i = 0; i < subscribers; i++) {
+      final DiscardingSocket socket = new DiscardingSocket("session".equals(transport));
+      sockets.add(socket);
+      fanOut.intercept(new RegisterEvent(socket, ADDRESS));
+    }
+    verify();
+  }
+
+
+  /**
+   * Both publish the same bytes to each socket, and the publisher writes sessions to their websocket.
+   */
+  private void verify() {
+    perSocket();
+    final long[] perSocketBytes = sockets.stream().mapToLong(socket -> socket.written).toArray();
+    sockets.forEach(DiscardingSocket::reset);
+    fanOut();
+    for (int i = 0; i < subscribers; i++) {
+      final DiscardingSocket socket = sockets.get(i);
+      if (socket.written != perSocketBytes[i]) {
+        throw new IllegalStateException("Written " + socket.written + " bytes instead of " + perSocketBytes[i]);
+      }
+      if (socket.session && (socket.frames != 1 || socket.writes != 0)) {
+        throw new IllegalStateException("Session not written to its websocket");
+      }
+      socket.reset();
+    }
+  }
+
+
+  /**
+   * Same work like the bridge does for each registered socket.
+   */
+  @Benchmark
+  public long perSocket() {
+    long written = 0;
+    for (DiscardingSocket socket : sockets) {
+      // The event bus copies JSON bodies for each local consumer
+      final JsonObject copy = body.copy();
+      if (linear.match(ADDRESS, copy) != null) {
+        final JsonObject envelope = new JsonObject().put("type", "rec").put("address", ADDRESS).put("body", copy);
+        socket.write(Buffer.buffer(envelope.encode()));
+        written++;
+      }
+    }
+    return written;
+  }
+
+
+  @Benchmark
+  public int fanOut() {
+    return fanOut.publish(ADDRESS, body);
+  }
+
+
+  /**
+   * Body of about 2 KB when encoded.
+   */
+  private static JsonObject body() {
+    final JsonArray items = new JsonArray();
+    for (int i = 0; i < 20; i++) {
+      items.add(new JsonObject().put("id", i).put("name", "item-" + i).put("price", i * 1.5)
+          .put("description", "Description of the item number " + i));
+    }
+    return new JsonObject().put("category", "news").put("timestamp", System.currentTimeMillis()).put("items", items);
+  }
+
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(LocalFanOutPublisherBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+
+
+  /**
+   * Registration as the bridge passes it to the interceptors.
+   */
+  private static class RegisterEvent implements BridgeEvent {
+    private final SockJSSocket socket;
+
+    private final JsonObject rawMessage;
+
+    private final Future<Boolean> future = Future.future();
+
+
+    RegisterEvent(SockJSSocket socket, String address) {
+      this.socket = socket;
+      this.rawMessage = new JsonObject().put("type", "register").put("address", address);
+    }
+
+
+    @Override
+    public BridgeEventType type() {
+      return BridgeEventType.REGISTER;
+    }
+
+
+    @Override
+    public JsonObject getRawMessage() {
+      return rawMessage;
+    }
+
+
+    @Override
+    public BridgeEvent setRawMessage(JsonObject message) {
+      if (message != rawMessage) {
+        rawMessage.clear().mergeIn(message);
+      }
+      return this;
+    }
+
+
+    @Override
+    public SockJSSocket socket() {
+      return socket;
+    }
+
+
+    @Override
+    public void handle(AsyncResult<Boolean> result) {
+      future.handle(result);
+    }
+
+
+    @Override
+    public boolean isComplete() {
+      return future.isComplete();
+    }
+
+
+    @Override
+    public Future<Boolean> setHandler(Handler<AsyncResult<Boolean>> handler) {
+      return future.setHandler(handler);
+    }
+
+
+    @Override
+    public void complete(Boolean result) {
+      future.complete(result);
+    }
+
+
+    @Override
+    public void complete() {
+      future.complete();
+    }
+
+
+    @Override
+    public void fail(Throwable cause) {
+      future.fail(cause);
+    }
+
+
+    @Override
+    public void fail(String failureMessage) {
+      future.fail(failureMessage);
+    }
+
+
+    @Override
+    public boolean tryComplete(Boolean result) {
+      return future.tryComplete(result);
+    }
+
+
+    @Override
+    public boolean tryComplete() {
+      return future.tryComplete();
+    }
+
+
+    @Override
+    public boolean tryFail(Throwable cause) {
+      return future.tryFail(cause);
+    }
+
+
+    @Override
+    public boolean tryFail(String failureMessage) {
+      return future.tryFail(failureMessage);
+    }
+
+
+    @Override
+    public Boolean result() {
+      return future.result();
+    }
+
+
+    @Override
+    public Throwable cause() {
+      return future.cause();
+    }
+
+
+    @Override
+    public boolean succeeded() {
+      return future.succeeded();
+    }
+
+
+    @Override
+    public boolean failed() {
+      return future.failed();
+    }
+  }
+
+
+  /**
+   * Socket they discards any written frame.
+   */
+  private static class DiscardingSocket implements SockJSSocket {
+    private final boolean session;
+
+    private long written;
+
+    /**
+     * Count of writes to the socket.
+     */
+    private int writes;
+
+    /**
+     * Count of frames written to the websocket under the session.
+     */
+    private int frames;
+
+
+    DiscardingSocket(boolean session) {
+      this.session = session;
+    }
+
+
+    @Override
+    public SockJSSocket write(Buffer data) {
+      if (session) {
+        // Same as SockJSSession.write and the websocket listener
+        final String frame = "a" + JsonCodec.encode(new Object[]{data.toString()});
+        written += frame.getBytes(StandardCharsets.UTF_8).length;
+      } else {
+        written += data.length();
+      }
+      writes++;
+      return this;
+    }
+
+
+    /**
+     * Same as the websocket under the session does with a frame.
+     */
+    void writeFrame(WebSocketFrame frame) {
+      written += frame.binaryData().length();
+      frames++;
+    }
+
+
+    void reset() {
+      written = 0;
+      writes = 0;
+      frames = 0;
+    }
+
+
+    @Override
+    public boolean writeQueueFull() {
+      return false;
+    }
+
+
+    @Override
+    public SockJSSocket exceptionHandler(Handler<Throwable> handler) {
+      return this;
+    }
+
+
+    @Override
+    public SockJSSocket handler(Handler<Buffer> handler) {
+      return this;
+    }
+
+
+    @Override
+    public SockJSSocket pause() {
+      return this;
+    }
+
+
+    @Override
+    public SockJSSocket resume() {
+      return this;
+    }
+
+
+    @Override
+    public SockJSSocket endHandler(Handler<Void> endHandler) {
+      return this;
+    }
+
+
+    @Override
+    public SockJSSocket setWriteQueueMaxSize(int maxSize) {
+      return this;
+    }
+
+
+    @Override
+    public SockJSSocket drainHandler(Handler<Void> handler) {
+      return this;
+    }
+
+
+    @Override
+    public String writeHandlerID() {
+      return null;
+    }
+
+
+    @Override
+    public void end() {
+    }
+
+
+    @Override
+    public void close() {
+    }
+
+
+    @Override
+    public SocketAddress remoteAddress() {
+      return null;
+    }
+
+
+    @Override
+    public SocketAddress localAddress() {
+      return null;
+    }
+
+
+    @Override
+    public MultiMap headers() {
+      return null;
+    }
+
+
+    @Override
+    public String uri() {
+      return null;
+    }
+
+
+    @Override
+    public Session webSession() {
+      return null;
+    }
+
+
+    @Override
+    public User webUser() {
+      return null;
+    }
+  }
+}
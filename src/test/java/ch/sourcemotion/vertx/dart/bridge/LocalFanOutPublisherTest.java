@@ -0,0 +1,304 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import ch.sourcemotion.vertx.dart.RawBridgeClient;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.AbstractUser;
+import io.vertx.ext.auth.AuthProvider;
+import io.vertx.ext.bridge.BridgeEventType;
+import io.vertx.ext.bridge.PermittedOptions;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.sockjs.BridgeEvent;
+import io.vertx.ext.web.handler.sockjs.BridgeOptions;
+import io.vertx.ext.web.handler.sockjs.SockJSHandler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author Michel Werren
+ */
+@RunWith(VertxUnitRunner.class)
+public class LocalFanOutPublisherTest {
+  private static final int PORT = 9006;
+
+  @Rule
+  public RunTestOnContext serverRule = new RunTestOnContext();
+
+  private Vertx vertx;
+
+  private LocalFanOutPublisher fanOut;
+
+  /**
+   * Whether the next connecting socket gets a user with the authority "news.read".
+   */
+  private final AtomicBoolean authorised = new AtomicBoolean();
+
+
+  @Before
+  public void setUp(TestContext context) throws Exception {
+    vertx = serverRule.vertx();
+
+    final BridgeOptions options = new BridgeOptions()
+        .addOutboundPermitted(new PermittedOptions().setAddress("news.all"))
+        .addOutboundPermitted(new PermittedOptions().setAddress("news.mixed")
+            .setMatch(new JsonObject().put("visibility", "public")))
+        .addOutboundPermitted(new PermittedOptions().setAddress("news.restricted").setRequiredAuthority("news.read"));
+    fanOut = LocalFanOutPublisher.of(options);
+
+    final SockJSHandler sockJSHandler = SockJSHandler.create(vertx);
+    sockJSHandler.bridge(options, new BridgeEventChain().add(LocalFanOutPublisherTest::notMuted).add(fanOut));
+
+    final Router router = Router.router(vertx);
+    router.route("/eventbus/*").handler(ctx -> {
+      if (authorised.get()) {
+        ctx.setUser(new AuthorityUser("news.read"));
+      }
+      ctx.next();
+    });
+    router.route("/eventbus/*").handler(sockJSHandler);
+
+    final HttpServer httpServer = vertx.createHttpServer(
+        new HttpServerOptions().setHost("localhost").setPort(PORT));
+    httpServer.requestHandler(router::accept).listen(PORT, context.asyncAssertSuccess());
+  }
+
+
+  /**
+   * Interceptor ahead of the publisher, rejects registrations with the header "muted".
+   */
+  private static boolean notMuted(BridgeEvent event) {
+    final JsonObject headers = event.type() == BridgeEventType.REGISTER ? event.getRawMessage().getJsonObject("headers")
+        : null;
+    return headers == null || !"true".equals(headers.getString("muted"));
+  }
+
+
+  /**
+   * Each registered socket receives the same frame, like the bridge would deliver it. Also the SockJS session, which gets
+   * the frame written to its websocket.
+   *
+   * @param context
+   */
+  @Test(timeout = 10000)
+  public void allSubscribers(TestContext context) {
+    final Async received = context.async(3);
+
+    for (int i = 0; i < 3; i++) {
+      final Handler<AsyncResult<RawBridgeClient>> connected = context.asyncAssertSuccess(client -> {
+        client.frameHandler(frame -> {
+          context.assertEquals("rec", frame.getString("type"));
+          context.assertEquals("news.all", frame.getString("address"));
+          context.assertEquals("hello", frame.getJsonObject("body").getString("text"));
+          context.assertEquals("value", frame.getJsonObject("headers").getString("key"));
+          received.countDown();
+        });
+        client.register("news.all");
+      });
+      if (i == 0) {
+        RawBridgeClient.connectSession(vertx, PORT, connected);
+      } else {
+        RawBridgeClient.connect(vertx, PORT, connected);
+      }
+    }
+
+    awaitSubscribers("news.all", 3, v -> context.assertEquals(3, fanOut.publish("news.all",
+        new JsonObject().put("text", "hello"), new DeliveryOptions().addHeader("key", "value"))));
+  }
+
+
+  /**
+   * Messages they don't match the structure of the rule are not written.
+   *
+   * @param context
+   */
+  @Test(timeout = 10000)
+  public void structureMatch(TestContext context) {
+    final Async received = context.async();
+
+    RawBridgeClient.connect(vertx, PORT, context.asyncAssertSuccess(client -> {
+      client.frameHandler(frame -> {
+        context.assertEquals("public", frame.getJsonObject("body").getString("visibility"));
+        received.complete();
+      });
+      client.register("news.mixed");
+    }));
+
+    awaitSubscribers("news.mixed", 1, v -> {
+      context.assertEquals(0, fanOut.publish("news.mixed", new JsonObject().put("visibility", "private")));
+      context.assertEquals(1, fanOut.publish("news.mixed", new JsonObject().put("visibility", "public")));
+    });
+  }
+
+
+  /**
+   * A registration rejected by an interceptor ahead in the chain is not tracked, so that socket don't receive.
+   *
+   * @param context
+   */
+  @Test(timeout = 10000)
+  public void interceptorAhead(TestContext context) {
+    final Async received = context.async();
+
+    RawBridgeClient.connect(vertx, PORT, context.asyncAssertSuccess(listening -> {
+      listening.frameHandler(frame -> {
+        context.assertEquals("hello", frame.getString("body"));
+        // Give a frame to the muted socket time to arrive
+        vertx.setTimer(300, id -> received.complete());
+      });
+      listening.register("news.all");
+
+      RawBridgeClient.connect(vertx, PORT, context.asyncAssertSuccess(muted -> {
+        muted.frameHandler(frame -> {
+          if (!"err".equals(frame.getString("type"))) {
+            context.fail("Received on a rejected registration " + frame);
+            return;
+          }
+          context.assertEquals("rejected", frame.getString("body"));
+          awaitSubscribers("news.all", 1, v -> context.assertEquals(1, fanOut.publish("news.all", "hello")));
+        });
+        muted.write(new JsonObject().put("type", "register").put("address", "news.all")
+            .put("headers", new JsonObject().put("muted", "true")));
+      }));
+    }));
+  }
+
+
+  /**
+   * Only the socket with the required authority receives, and only that is counted.
+   *
+   * @param context
+   */
+  @Test(timeout = 10000)
+  public void requiredAuthority(TestContext context) {
+    final Async received = context.async(2);
+
+    authorised.set(true);
+    RawBridgeClient.connect(vertx, PORT, context.asyncAssertSuccess(authorisedClient -> {
+      authorisedClient.frameHandler(frame -> {
+        context.assertEquals("secret", frame.getString("body"));
+        // Give a frame to the anonymous socket time to arrive
+        vertx.setTimer(300, id -> received.countDown());
+      });
+      authorisedClient.register("news.restricted");
+
+      authorised.set(false);
+      RawBridgeClient.connect(vertx, PORT, context.asyncAssertSuccess(anonymousClient -> {
+        anonymousClient.frameHandler(frame -> context.fail("Received without authority " + frame));
+        anonymousClient.register("news.restricted");
+
+        awaitSubscribers("news.restricted", 2, v -> fanOut.publish("news.restricted", "secret",
+            new DeliveryOptions(), written -> {
+              context.assertEquals(1, written);
+              received.countDown();
+            }));
+      }));
+    }));
+  }
+
+
+  /**
+   * A SockJS session on a websocket the client don't read anymore get skipped, as soon the websocket is full.
+   *
+   * @param context
+   */
+  @Test(timeout = 10000)
+  public void skipFullSession(TestContext context) {
+    final Async done = context.async();
+    final String body = String.join("", Collections.nCopies(10 * 1024, "x"));
+
+    RawBridgeClient.connectSession(vertx, PORT, context.asyncAssertSuccess(client -> {
+      client.register("news.all");
+      client.webSocket().pause();
+      awaitSubscribers("news.all", 1, v -> {
+        int written = 0;
+        for (int i = 0; i < 2000; i++) {
+          written += fanOut.publish("news.all", body);
+        }
+        context.assertTrue(written > 0 && written < 2000, "Written " + written);
+        client.close();
+        done.complete();
+      });
+    }));
+  }
+
+
+  /**
+   * Unregistered and closed sockets are no longer subscribers.
+   *
+   * @param context
+   */
+  @Test(timeout = 10000)
+  public void unsubscribe(TestContext context) {
+    final Async done = context.async();
+
+    RawBridgeClient.connect(vertx, PORT, context.asyncAssertSuccess(first -> {
+      first.register("news.all");
+      RawBridgeClient.connect(vertx, PORT, context.asyncAssertSuccess(second -> {
+        second.register("news.all");
+        awaitSubscribers("news.all", 2, registered -> {
+          first.unregister("news.all");
+          second.close();
+          awaitSubscribers("news.all", 0, unregistered -> {
+            context.assertEquals(0, fanOut.publish("news.all", "nobody"));
+            done.complete();
+          });
+        });
+      }));
+    }));
+  }
+
+
+  private void awaitSubscribers(String address, int count, Handler<Void> handler) {
+    vertx.setPeriodic(20, id -> {
+      if (fanOut.subscribers(address).size() == count) {
+        vertx.cancelTimer(id);
+        handler.handle(null);
+      }
+    });
+  }
+
+
+  /**
+   * User with a fixed authority.
+   */
+  private static class AuthorityUser extends AbstractUser {
+    private final String authority;
+
+
+    AuthorityUser(String authority) {
+      this.authority = authority;
+    }
+
+
+    @Override
+    protected void doIsPermitted(String permission, Handler<AsyncResult<Boolean>> resultHandler) {
+      resultHandler.handle(Future.succeededFuture(authority.equals(permission)));
+    }
+
+
+    @Override
+    public JsonObject principal() {
+      return new JsonObject().put("authority", authority);
+    }
+
+
+    @Override
+    public void setAuthProvider(AuthProvider authProvider) {
+    }
+  }
+}
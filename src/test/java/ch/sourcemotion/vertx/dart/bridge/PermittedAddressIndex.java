@@ -0,0 +1,257 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.bridge.PermittedOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Precompiled index over {@link PermittedOptions}, with the same semantic like the bridge: The first rule (in the order
+ * given) they matches the address and the structure of the body wins.
+ * <p>
+ * The bridge itself scans all rules linearly for each message and registration. This index splits the rules into:
+ * <ul>
+ * <li>Exact addresses, and regular expressions without meta characters, in a hash map</li>
+ * <li>Regular expressions like <code>prefix\..*</code> in a prefix trie</li>
+ * <li>Any other regular expression in one combined pattern</li>
+ * <li>Rules with structure match, or expressions they can not get combined, scanned linearly as before</li>
+ * </ul>
+ * The result of the first three is cached per address.
+ * <p>
+ * The combined pattern is no automaton, but a {@link Pattern} alternation, as the JDK has no DFA based regular
+ * expressions. It backtracks alternative by alternative, so a miss still costs about as much as trying each expression, but
+ * in one pass without a matcher per rule. The cache makes this a one-time cost per address.
+ *
+ * @author Michel Werren
+ */
+public class PermittedAddressIndex {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PermittedAddressIndex.class);
+
+  private static final int NONE = AddressPrefixTrie.NONE;
+
+  private static final String META_CHARACTERS = ".[]{}()*+?^$|";
+
+  private final List<PermittedOptions> rules;
+
+  private final Map<String, Integer> exact = new HashMap<>();
+
+  private final AddressPrefixTrie prefixes = new AddressPrefixTrie();
+
+  private final Pattern combined;
+
+  /**
+   * Ordinal of the rule per capturing group of {@link #combined}. 0 for groups of the rule expressions itself.
+   */
+  private final int[] ordinalByGroup;
+
+  private final List<Integer> linear = new ArrayList<>();
+
+  private final Map<String, Pattern> linearPatterns = new HashMap<>();
+
+  private final int maxCacheSize;
+
+  private final Map<String, Integer> cache = new ConcurrentHashMap<>();
+
+
+  public PermittedAddressIndex(List<PermittedOptions> rules) {
+    this(rules, 10000);
+  }
+
+
+  /**
+   * @param rules
+   * @param maxCacheSize Maximum count of cached addresses. The cache get cleared when exceeded.
+   */
+  public PermittedAddressIndex(List<PermittedOptions> rules, int maxCacheSize) {
+    this.rules = new ArrayList<>(rules);
+    this.maxCacheSize = maxCacheSize;
+
+    final List<Integer> regexOrdinals = new ArrayList<>();
+    for (int ordinal = 0; ordinal < this.rules.size(); ordinal++) {
+      final PermittedOptions rule = this.rules.get(ordinal);
+      if (rule.getMatch() != null) {
+        linear.add(ordinal);
+      } else if (rule.getAddress() != null) {
+        exact.putIfAbsent(rule.getAddress(), ordinal);
+      } else if (rule.getAddressRegex() == null) {
+        // No address restriction at all
+        prefixes.add("", ordinal);
+      } else {
+        final String regex = rule.getAddressRegex();
+        final String literal = literalOf(regex);
+        final String prefix = regex.endsWith(".*") ? literalOf(regex.substring(0, regex.length() - 2)) : null;
+        if (literal != null) {
+          exact.putIfAbsent(literal, ordinal);
+        } else if (prefix != null) {
+          prefixes.add(prefix, ordinal);
+        } else if (hasBackReference(regex)) {
+          // Group numbers would shift within the combined pattern
+          linear.add(ordinal);
+        } else {
+          regexOrdinals.add(ordinal);
+        }
+      }
+    }
+
+    Pattern combinedPattern = null;
+    int[] groups = new int[0];
+    if (!regexOrdinals.isEmpty()) {
+      try {
+        final StringBuilder alternation = new StringBuilder();
+        final List<Integer> ordinalByGroupList = new ArrayList<>();
+        ordinalByGroupList.add(0);
+        for (Integer ordinal : regexOrdinals) {
+          final String regex = this.rules.get(ordinal).getAddressRegex();
+          if (alternation.length() > 0) {
+            alternation.append('|');
+          }
+          alternation.append('(').append(regex).append(')');
+          ordinalByGroupList.add(ordinal);
+          for (int i = 0; i < Pattern.compile(regex).matcher("").groupCount(); i++) {
+            ordinalByGroupList.add(-1);
+          }
+        }
+        combinedPattern = Pattern.compile(alternation.toString());
+        groups = ordinalByGroupList.stream().mapToInt(Integer::intValue).toArray();
+      } catch (PatternSyntaxException e) {
+        LOGGER.warn("Failed to combine address expressions, fall back to linear scan", e);
+        combinedPattern = null;
+        linear.addAll(regexOrdinals);
+        linear.sort(Integer::compare);
+      }
+    }
+    combined = combinedPattern;
+    ordinalByGroup = groups;
+    // Compiled upfront, as the index is used from several event loops
+    for (Integer ordinal : linear) {
+      final String regex = this.rules.get(ordinal).getAddressRegex();
+      if (regex != null) {
+        linearPatterns.computeIfAbsent(regex, Pattern::compile);
+      }
+    }
+  }
+
+
+  /**
+   * @param address
+   * @param body    The message body to match the structure against, may null.
+   * @return The first matching rule, <code>null</code> when nothing matches.
+   */
+  public PermittedOptions match(String address, Object body) {
+    int ordinal = cache.computeIfAbsent(address, this::lookupByAddress);
+    if (cache.size() > maxCacheSize) {
+      cache.clear();
+    }
+    for (Integer linearOrdinal : linear) {
+      if (linearOrdinal > ordinal) {
+        break;
+      }
+      final PermittedOptions rule = rules.get(linearOrdinal);
+      if (addressMatches(rule, address) && structureMatches(rule.getMatch(), body)) {
+        ordinal = linearOrdinal;
+        break;
+      }
+    }
+    return ordinal == NONE ? null : rules.get(ordinal);
+  }
+
+
+  private int lookupByAddress(String address) {
+    int ordinal = exact.getOrDefault(address, NONE);
+    ordinal = Math.min(ordinal, prefixes.lookup(address));
+    if (combined != null) {
+      final Matcher matcher = combined.matcher(address);
+      if (matcher.matches()) {
+        // The first alternative they matches wins, so this is the lowest ordinal of all expressions
+        for (int group = 1; group < ordinalByGroup.length; group++) {
+          if (ordinalByGroup[group] >= 0 && matcher.start(group) >= 0) {
+            ordinal = Math.min(ordinal, ordinalByGroup[group]);
+            break;
+          }
+        }
+      }
+    }
+    return ordinal;
+  }
+
+
+  private boolean addressMatches(PermittedOptions rule, String address) {
+    if (rule.getAddress() != null) {
+      return rule.getAddress().equals(address);
+    }
+    return rule.getAddressRegex() == null || linearPatterns.get(rule.getAddressRegex()).matcher(address).matches();
+  }
+
+
+  /**
+   * Same deep structure match like the bridge.
+   */
+  private static boolean structureMatches(JsonObject match, Object bodyObject) {
+    if (match == null || bodyObject == null) {
+      return true;
+    }
+    if (bodyObject instanceof JsonObject) {
+      final JsonObject body = (JsonObject) bodyObject;
+      for (String fieldName : match.fieldNames()) {
+        final Object mv = match.getValue(fieldName);
+        final Object bv = body.getValue(fieldName);
+        if (mv instanceof JsonObject) {
+          if (!structureMatches((JsonObject) mv, bv)) {
+            return false;
+          }
+        } else if (!mv.equals(bv)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+
+  /**
+   * @param regex
+   * @return The literal the expression matches, <code>null</code> when it contains meta characters.
+   */
+  static String literalOf(String regex) {
+    final StringBuilder literal = new StringBuilder(regex.length());
+    for (int i = 0; i < regex.length(); i++) {
+      final char c = regex.charAt(i);
+      if (c == '\\') {
+        if (i + 1 == regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+          // Character classes like \d or back references
+          return null;
+        }
+        literal.append(regex.charAt(++i));
+      } else if (META_CHARACTERS.indexOf(c) >= 0) {
+        return null;
+      } else {
+        literal.append(c);
+      }
+    }
+    return literal.toString();
+  }
+
+
+  private static boolean hasBackReference(String regex) {
+    for (int i = 0; i < regex.length() - 1; i++) {
+      if (regex.charAt(i) == '\\') {
+        final char next = regex.charAt(i + 1);
+        if (Character.isDigit(next) || next == 'k') {
+          return true;
+        }
+        i++;
+      }
+    }
+    return false;
+  }
+}
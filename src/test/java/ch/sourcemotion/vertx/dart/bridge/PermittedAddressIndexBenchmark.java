@@ -0,0 +1,192 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.bridge.PermittedOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Permission check per message of the bridge (linear scan over all rules) compared with {@link PermittedAddressIndex}.
+ * <p>
+ * The rules are a mix of exact addresses, prefix expressions and other expressions. The checked addresses are spread over all
+ * rules, including addresses they match no rule, which is the worst case for the linear scan.
+ * <p>
+ * Run with {@link #main(String[])} from the test classpath.
+ *
+ * @author Michel Werren
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermittedAddressIndexBenchmark {
+  private static final int ADDRESS_COUNT = 1024;
+
+  @Param({"10", "1000", "10000"})
+  public int rules;
+
+  private LinearPermittedMatcher linear;
+
+  private PermittedAddressIndex index;
+
+  private PermittedAddressIndex uncachedIndex;
+
+  private String[] addresses;
+
+  private int next;
+
+
+  @Setup
+  public void setUp() {
+    final List<PermittedOptions> permitted = rules(rules);
+    linear = new LinearPermittedMatcher(permitted);
+    index = new PermittedAddressIndex(permitted);
+    uncachedIndex = new PermittedAddressIndex(permitted, 0);
+    addresses = addresses(rules, ADDRESS_COUNT);
+  }
+
+
+  @Benchmark
+  public PermittedOptions linear() {
+    return linear.match(nextAddress(), null);
+  }
+
+
+  @Benchmark
+  public PermittedOptions index() {
+    return index.match(nextAddress(), null);
+  }
+
+
+  /**
+   * Index without the per address cache, as for addresses they are used only once.
+   */
+  @Benchmark
+  public PermittedOptions indexUncached() {
+    return uncachedIndex.match(nextAddress(), null);
+  }
+
+
+  private String nextAddress() {
+    next = (next + 1) & (ADDRESS_COUNT - 1);
+    return addresses[next];
+  }
+
+
+  static List<PermittedOptions> rules(int count) {
+    final List<PermittedOptions> rules = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      switch (i % 3) {
+        case 0:
+          rules.add(new PermittedOptions().setAddress("service." + i + ".get"));
+          break;
+        case 1:
+          rules.add(new PermittedOptions().setAddressRegex("tenant\\." + i + "\\..*"));
+          break;
+        default:
+          rules.add(new PermittedOptions().setAddressRegex("user\\.[0-9]+\\." + i + "\\.(events|state)"));
+      }
+    }
+    return rules;
+  }
+
+
+  static String[] addresses(int ruleCount, int count) {
+    final Random random = new Random(4711);
+    final String[] addresses = new String[count];
+    for (int i = 0; i < count; i++) {
+      final int rule = random.nextInt(ruleCount);
+      switch (random.nextInt(4)) {
+        case 0:
+          addresses[i] = "service." + rule + ".get";
+          break;
+        case 1:
+          addresses[i] = "tenant." + rule + ".orders.new";
+          break;
+        case 2:
+          addresses[i] = "user." + random.nextInt(1000) + "." + rule + ".events";
+          break;
+        default:
+          addresses[i] = "unknown." + rule;
+      }
+    }
+    return addresses;
+  }
+
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(PermittedAddressIndexBenchmark.class.getSimpleName()).build()).run();
+  }
+
+
+  /**
+   * Same matching like the bridge does for each message.
+   */
+  static class LinearPermittedMatcher {
+    private final List<PermittedOptions> rules;
+
+    private final Map<String, Pattern> compiled = new HashMap<>();
+
+
+    LinearPermittedMatcher(List<PermittedOptions> rules) {
+      this.rules = rules;
+    }
+
+
+    PermittedOptions match(String address, Object body) {
+      for (PermittedOptions rule : rules) {
+        final boolean addressOk;
+        if (rule.getAddress() != null) {
+          addressOk = rule.getAddress().equals(address);
+        } else {
+          addressOk = rule.getAddressRegex() == null || compiled.computeIfAbsent(rule.getAddressRegex(), Pattern::compile)
+              .matcher(address).matches();
+        }
+        if (addressOk && structureMatches(rule.getMatch(), body)) {
+          return rule;
+        }
+      }
+      return null;
+    }
+
+
+    private static boolean structureMatches(JsonObject match, Object body) {
+      if (match == null || body == null) {
+        return true;
+      }
+      if (body instanceof JsonObject) {
+        for (String fieldName : match.fieldNames()) {
+          final Object mv = match.getValue(fieldName);
+          final Object bv = ((JsonObject) body).getValue(fieldName);
+          if (mv instanceof JsonObject ? !structureMatches((JsonObject) mv, bv) : !mv.equals(bv)) {
+            return false;
+          }
+        }
+        return true;
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.bridge.PermittedOptions;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Michel Werren
+ */
+public class PermittedAddressIndexTest {
+
+
+  /**
+   * The index must decide for the same rule as the linear scan of the bridge.
+   */
+  @Test
+  public void sameRuleAsLinearScan() {
+    for (int ruleCount : new int[]{10, 1000}) {
+      final List<PermittedOptions> rules = PermittedAddressIndexBenchmark.rules(ruleCount);
+      final PermittedAddressIndexBenchmark.LinearPermittedMatcher linear =
+          new PermittedAddressIndexBenchmark.LinearPermittedMatcher(rules);
+      final PermittedAddressIndex index = new PermittedAddressIndex(rules);
+      for (String address : PermittedAddressIndexBenchmark.addresses(ruleCount, 2000)) {
+        assertSame(address, linear.match(address, null), index.match(address, null));
+      }
+    }
+  }
+
+
+  @Test
+  public void firstRuleWins() {
+    final PermittedOptions structure = new PermittedOptions().setAddress("orders")
+        .setMatch(new JsonObject().put("type", "new"));
+    final PermittedOptions prefix = new PermittedOptions().setAddressRegex("orders.*");
+    final PermittedOptions literalRegex = new PermittedOptions().setAddressRegex("orders\\.archive");
+    final PermittedOptions anyRegex = new PermittedOptions().setAddressRegex("^orders\\.[0-9]+$");
+    final PermittedOptions backReference = new PermittedOptions().setAddressRegex("(a+)-\\1");
+    final PermittedOptions any = new PermittedOptions();
+    final PermittedAddressIndex index =
+        new PermittedAddressIndex(Arrays.asList(structure, literalRegex, anyRegex, backReference, prefix, any));
+
+    assertSame(structure, index.match("orders", new JsonObject().put("type", "new")));
+    assertSame(structure, index.match("orders", null));
+    assertSame(prefix, index.match("orders", new JsonObject().put("type", "cancel")));
+    assertSame(prefix, index.match("orders", "not an object"));
+    assertSame(literalRegex, index.match("orders.archive", null));
+    assertSame(anyRegex, index.match("orders.42", null));
+    assertSame(backReference, index.match("aa-aa", null));
+    assertSame(any, index.match("aa-a", null));
+  }
+
+
+  @Test
+  public void noMatch() {
+    final PermittedAddressIndex index = new PermittedAddressIndex(Arrays.asList(
+        new PermittedOptions().setAddress("a"),
+        new PermittedOptions().setAddressRegex("b\\..*"),
+        new PermittedOptions().setAddressRegex("c[0-9]"),
+        new PermittedOptions().setAddress("d").setMatch(new JsonObject().put("x", 1))));
+
+    assertNull(index.match("b", null));
+    assertNull(index.match("c10", null));
+    assertNull(index.match("d", new JsonObject().put("x", 2)));
+    assertNull(index.match("e", null));
+  }
+
+
+  @Test
+  public void literalOf() {
+    assertEquals("a.b", PermittedAddressIndex.literalOf("a\\.b"));
+    assertNull(PermittedAddressIndex.literalOf("a.b"));
+    assertNull(PermittedAddressIndex.literalOf("a\\d"));
+    assertNull(PermittedAddressIndex.literalOf("a\\"));
+  }
+}
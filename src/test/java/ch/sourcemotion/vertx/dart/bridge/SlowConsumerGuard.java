@@ -0,0 +1,194 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.handler.sockjs.BridgeEvent;
+import io.vertx.ext.web.handler.sockjs.BridgeOptions;
+import io.vertx.ext.web.handler.sockjs.SockJSSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Protects the server against clients they cannot consume the outbound messages fast enough. Without it, the outbound queue
+ * of such a socket grows without bound (for polling transports on the heap).
+ * <p>
+ * The write queue size of each socket get limited to the threshold. When the queue is full, outbound messages are handled
+ * according the {@link Policy}. Replies to requests of the client are always delivered, as the request / reply flow would
+ * break otherwise. Requests of the server are treated like any other message.
+ * <p>
+ * A SockJS session over websocket writes each message immediately, so its own queue never fills. For them the queue of the
+ * websocket under the session is guarded, see {@link SocketQueueGauge}.
+ *
+ * @author Michel Werren
+ */
+public class SlowConsumerGuard implements BridgeEventInterceptor {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SlowConsumerGuard.class);
+
+  /**
+   * What happens with outbound messages for a socket with full write queue.
+   */
+  public enum Policy {
+    /**
+     * The message get dropped.
+     */
+    DROP,
+    /**
+     * Only the latest message per address is kept and delivered when the queue is drained.
+     */
+    CONFLATE,
+    /**
+     * The socket get closed.
+     */
+    DISCONNECT
+  }
+
+  private final Policy policy;
+
+  private final int maxQueueSize;
+
+  private final long replyTimeout;
+
+  private final Map<SockJSSocket, SocketQueueGauge> gauges = new ConcurrentHashMap<>();
+
+  private final AtomicLong disconnected = new AtomicLong();
+
+  private Handler<SocketQueueGauge> disconnectHandler;
+
+
+  /**
+   * @param policy
+   * @param maxQueueSize Threshold of the write queue. In characters for polling transports, in bytes for websocket
+   *                     transports (including SockJS sessions over websocket).
+   */
+  public SlowConsumerGuard(Policy policy, int maxQueueSize) {
+    this(policy, maxQueueSize, BridgeOptions.DEFAULT_REPLY_TIMEOUT);
+  }
+
+
+  /**
+   * @param policy
+   * @param maxQueueSize Threshold of the write queue. In characters for polling transports, in bytes for websocket
+   *                     transports (including SockJS sessions over websocket).
+   * @param replyTimeout Same as {@link BridgeOptions#getReplyTimeout()}. Replies to requests of the client pass a full
+   *                     queue within this time.
+   */
+  public SlowConsumerGuard(Policy policy, int maxQueueSize, long replyTimeout) {
+    this.policy = policy;
+    this.maxQueueSize = maxQueueSize;
+    this.replyTimeout = replyTimeout;
+  }
+
+
+  /**
+   * @param handler Get called with the final gauge of each socket this guard has closed.
+   * @return
+   */
+  public SlowConsumerGuard disconnectHandler(Handler<SocketQueueGauge> handler) {
+    this.disconnectHandler = handler;
+    return this;
+  }
+
+
+  @Override
+  public boolean intercept(BridgeEvent event) {
+    final SockJSSocket socket = event.socket();
+    switch (event.type()) {
+      case SOCKET_CREATED:
+        final SocketQueueGauge created = new SocketQueueGauge(socket);
+        created.setWriteQueueMaxSize(maxQueueSize);
+        gauges.put(socket, created);
+        return true;
+      case SOCKET_CLOSED:
+        gauges.remove(socket);
+        return true;
+      case SEND:
+        final String replyAddress = event.getRawMessage().getString("replyAddress");
+        final SocketQueueGauge sender = gauges.get(socket);
+        if (replyAddress != null && sender != null) {
+          sender.expectReply(replyAddress, replyTimeout);
+        }
+        return true;
+      case RECEIVE:
+        return onReceive(socket, event.getRawMessage());
+      default:
+        return true;
+    }
+  }
+
+
+  private boolean onReceive(SockJSSocket socket, JsonObject envelope) {
+    final SocketQueueGauge gauge = gauges.get(socket);
+    if (gauge == null) {
+      return true;
+    }
+    // A reply arrives on the reply address of the request
+    if (gauge.isReply(envelope.getString("address")) || !gauge.isWriteQueueFull()) {
+      if (gauge.getConflated() > 0) {
+        // The held back message on this address is outdated now, the others are delivered first
+        gauge.discardConflated(envelope.getString("address"));
+        flushConflated(socket, gauge);
+      }
+      gauge.delivered();
+      return true;
+    }
+
+    switch (policy) {
+      case CONFLATE:
+        gauge.conflate(envelope.getString("address"), envelope);
+        // The bridge don't use the drain handler
+        gauge.drainHandler(v -> flushConflated(socket, gauge));
+        break;
+      case DISCONNECT:
+        LOGGER.warn("Close slow socket {}, {}", socket.writeHandlerID(), gauge);
+        gauge.dropped();
+        gauge.disconnected();
+        disconnected.incrementAndGet();
+        socket.close();
+        if (disconnectHandler != null) {
+          disconnectHandler.handle(gauge);
+        }
+        break;
+      default:
+        gauge.dropped();
+    }
+    return false;
+  }
+
+
+  private void flushConflated(SockJSSocket socket, SocketQueueGauge gauge) {
+    final List<JsonObject> pending = gauge.takeConflated();
+    for (int i = 0; i < pending.size(); i++) {
+      if (gauge.isWriteQueueFull()) {
+        // Hold back the rest until the next drain
+        pending.subList(i, pending.size()).forEach(envelope -> gauge.conflate(envelope.getString("address"), envelope));
+        gauge.drainHandler(v -> flushConflated(socket, gauge));
+        return;
+      }
+      socket.write(Buffer.buffer(pending.get(i).encode()));
+      gauge.delivered();
+    }
+  }
+
+
+  /**
+   * @return Queue gauges of all current sockets.
+   */
+  public Map<SockJSSocket, SocketQueueGauge> gauges() {
+    return Collections.unmodifiableMap(gauges);
+  }
+
+
+  /**
+   * @return Count of sockets closed by this guard, as they were too slow.
+   */
+  public long getDisconnected() {
+    return disconnected.get();
+  }
+}
@@ -0,0 +1,294 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import ch.sourcemotion.vertx.dart.RawBridgeClient;
+import ch.sourcemotion.vertx.dart.XhrBridgeClient;
+import ch.sourcemotion.vertx.dart.bridge.SlowConsumerGuard.Policy;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.bridge.PermittedOptions;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.sockjs.BridgeOptions;
+import io.vertx.ext.web.handler.sockjs.SockJSHandler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A client they never polls or don't read its websocket (slow link) together with a fast publisher.
+ *
+ * @author Michel Werren
+ */
+@RunWith(VertxUnitRunner.class)
+public class SlowConsumerGuardTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SlowConsumerGuardTest.class);
+
+  private static final int PORT = 9002;
+
+  private static final int MAX_QUEUE_SIZE = 64 * 1024;
+
+  private static final int MESSAGES = 2000;
+
+  private static final String BODY = new String(new char[10 * 1024]).replace('\0', 'x');
+
+  /**
+   * The unguarded queue holds at least 20 MB of messages.
+   */
+  private static final long MAX_GUARDED_HEAP_GROWTH = 8 * 1024 * 1024;
+
+  @Rule
+  public RunTestOnContext serverRule = new RunTestOnContext();
+
+  private Vertx vertx;
+
+
+  @Before
+  public void setUp() throws Exception {
+    vertx = serverRule.vertx();
+  }
+
+
+  @Test(timeout = 30000)
+  public void unguardedQueueGrows(TestContext context) {
+    final Async async = context.async();
+    startServer(context, null, v -> publishToSlowClient(context, "feed", heapGrowth -> {
+      LOGGER.info("Unguarded heap growth: {} bytes", heapGrowth);
+      context.assertTrue(heapGrowth > MAX_GUARDED_HEAP_GROWTH, "Test setup doesn't produce a growing queue");
+      async.complete();
+    }));
+  }
+
+
+  @Test(timeout = 30000)
+  public void dropKeepsHeapBounded(TestContext context) {
+    final Async async = context.async();
+    final SlowConsumerGuard guard = new SlowConsumerGuard(Policy.DROP, MAX_QUEUE_SIZE);
+    startServer(context, guard, v -> publishToSlowClient(context, "feed", heapGrowth -> {
+      final SocketQueueGauge gauge = guard.gauges().values().iterator().next();
+      LOGGER.info("Guarded heap growth: {} bytes, {}", heapGrowth, gauge);
+      context.assertTrue(heapGrowth < MAX_GUARDED_HEAP_GROWTH, "Heap growth " + heapGrowth);
+      context.assertTrue(gauge.isWriteQueueFull());
+      context.assertTrue(gauge.getDropped() > 0);
+      context.assertEquals((long) MESSAGES, gauge.getDelivered() + gauge.getDropped());
+      async.complete();
+    }));
+  }
+
+
+  @Test(timeout = 30000)
+  public void disconnectClosesSlowSocket(TestContext context) {
+    final Async async = context.async();
+    final SlowConsumerGuard guard = new SlowConsumerGuard(Policy.DISCONNECT, MAX_QUEUE_SIZE);
+    final List<SocketQueueGauge> disconnected = new ArrayList<>();
+    guard.disconnectHandler(disconnected::add);
+    startServer(context, guard, v -> publishToSlowClient(context, "feed", heapGrowth -> {
+      // Socket is gone, so its gauge too
+      context.assertTrue(guard.gauges().isEmpty());
+      context.assertEquals(1L, guard.getDisconnected());
+      context.assertEquals(1, disconnected.size());
+      context.assertTrue(disconnected.get(0).isDisconnected());
+      async.complete();
+    }));
+  }
+
+
+  @Test(timeout = 30000)
+  public void dropOnRawWebsocket(TestContext context) {
+    dropOnWebsocket(context, false);
+  }
+
+
+  /**
+   * The session writes immediately to the websocket, so the queue of the websocket under the session get guarded.
+   *
+   * @param context
+   */
+  @Test(timeout = 30000)
+  public void dropOnSockJSWebsocketSession(TestContext context) {
+    dropOnWebsocket(context, true);
+  }
+
+
+  /**
+   * A full queue lets the reply to a request of the client pass, but not a request of the server.
+   *
+   * @param context
+   */
+  @Test(timeout = 30000)
+  public void repliesToClientRequestsPass(TestContext context) {
+    final Async async = context.async();
+    final SlowConsumerGuard guard = new SlowConsumerGuard(Policy.DROP, MAX_QUEUE_SIZE);
+    vertx.eventBus().consumer("echo", message -> message.reply(message.body()));
+    startServer(context, guard, v -> XhrBridgeClient.connect(vertx, PORT, context.asyncAssertSuccess(
+        client -> client.register("feed", context.asyncAssertSuccess(registered -> {
+          for (int i = 0; i < MESSAGES; i++) {
+            vertx.eventBus().publish("feed", BODY);
+          }
+          vertx.eventBus().send("feed", "request", new DeliveryOptions().setSendTimeout(1000), reply -> {
+          });
+          final JsonObject request = new JsonObject().put("type", "send").put("address", "echo").put("body", "ping")
+              .put("replyAddress", "reply-1");
+          client.write(request, context.asyncAssertSuccess(sent -> vertx.setTimer(500, t -> {
+            final SocketQueueGauge gauge = guard.gauges().values().iterator().next();
+            LOGGER.info("Before poll {}", gauge);
+            context.assertTrue(gauge.isWriteQueueFull());
+            client.poll(context.asyncAssertSuccess(frames -> {
+              context.assertTrue(frames.stream().anyMatch(frame -> "reply-1".equals(frame.getString("address"))),
+                  "Reply to the client request dropped");
+              context.assertFalse(frames.stream().anyMatch(frame -> frame.getString("replyAddress") != null),
+                  "Request of the server passed the full queue");
+              client.close();
+              async.complete();
+            }));
+          })));
+        })))));
+  }
+
+
+  /**
+   * The client stops to read, so the TCP buffers and then the websocket queue fill up.
+   */
+  private void dropOnWebsocket(TestContext context, boolean session) {
+    final Async async = context.async();
+    final SlowConsumerGuard guard = new SlowConsumerGuard(Policy.DROP, MAX_QUEUE_SIZE);
+    startServer(context, guard, v -> {
+      final Handler<AsyncResult<RawBridgeClient>> connected = context.asyncAssertSuccess(client -> {
+        client.register("feed");
+        client.webSocket().pause();
+        vertx.setTimer(500, registered -> {
+          for (int i = 0; i < MESSAGES; i++) {
+            vertx.eventBus().publish("feed", BODY);
+          }
+          vertx.setTimer(1000, t -> {
+            final SocketQueueGauge gauge = guard.gauges().values().iterator().next();
+            LOGGER.info("Websocket (session: {}) {}", session, gauge);
+            context.assertTrue(gauge.isWriteQueueFull());
+            context.assertTrue(gauge.getQueueDepth() >= MAX_QUEUE_SIZE, "Queue depth " + gauge.getQueueDepth());
+            context.assertTrue(gauge.getDropped() > 0);
+            context.assertEquals((long) MESSAGES, gauge.getDelivered() + gauge.getDropped());
+            client.close();
+            async.complete();
+          });
+        });
+      });
+      if (session) {
+        RawBridgeClient.connectSession(vertx, PORT, connected);
+      } else {
+        RawBridgeClient.connect(vertx, PORT, connected);
+      }
+    });
+  }
+
+
+  /**
+   * After the slow client polls, it receives the latest message of each address.
+   *
+   * @param context
+   */
+  @Test(timeout = 30000)
+  public void conflateDeliversLatestPerAddress(TestContext context) {
+    final Async async = context.async();
+    final SlowConsumerGuard guard = new SlowConsumerGuard(Policy.CONFLATE, MAX_QUEUE_SIZE);
+    startServer(context, guard, v -> XhrBridgeClient.connect(vertx, PORT, context.asyncAssertSuccess(
+        client -> client.register("first", context.asyncAssertSuccess(
+            r1 -> client.register("second", context.asyncAssertSuccess(r2 -> {
+              for (int i = 0; i < MESSAGES; i++) {
+                vertx.eventBus().publish(i % 2 == 0 ? "first" : "second",
+                    new JsonObject().put("sequence", i).put("payload", BODY));
+              }
+              vertx.setTimer(1000, t -> {
+                final SocketQueueGauge gauge = guard.gauges().values().iterator().next();
+                LOGGER.info("Before poll {}", gauge);
+                context.assertEquals(2, gauge.getConflated());
+                pollUntilLatest(context, client, new HashMap<>(), latest -> {
+                  context.assertEquals(0, gauge.getConflated());
+                  client.close();
+                  async.complete();
+                });
+              });
+            })))))));
+  }
+
+
+  /**
+   * Polls until the latest messages were received.
+   */
+  private void pollUntilLatest(TestContext context, XhrBridgeClient client, Map<String, Integer> latest,
+                               Handler<Map<String, Integer>> handler) {
+    client.poll(context.asyncAssertSuccess(frames -> {
+      frames.forEach(frame -> latest.put(frame.getString("address"),
+          frame.getJsonObject("body").getInteger("sequence")));
+      if (latest.getOrDefault("first", -1) == MESSAGES - 2
+          && latest.getOrDefault("second", -1) == MESSAGES - 1) {
+        handler.handle(latest);
+      } else {
+        pollUntilLatest(context, client, latest, handler);
+      }
+    }));
+  }
+
+
+  /**
+   * Publishes big messages on the address the slow client is registered on.
+   *
+   * @param context
+   * @param address
+   * @param heapGrowthHandler Get called with the retained heap growth
+   */
+  private void publishToSlowClient(TestContext context, String address, Handler<Long> heapGrowthHandler) {
+    XhrBridgeClient.connect(vertx, PORT, context.asyncAssertSuccess(
+        client -> client.register(address, context.asyncAssertSuccess(registered -> {
+          final long before = usedHeapAfterGc();
+          for (int i = 0; i < MESSAGES; i++) {
+            vertx.eventBus().publish(address, BODY);
+          }
+          vertx.setTimer(1000, t -> {
+            heapGrowthHandler.handle(usedHeapAfterGc() - before);
+            client.close();
+          });
+        }))));
+  }
+
+
+  private static long usedHeapAfterGc() {
+    System.gc();
+    System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+
+  private void startServer(TestContext context, SlowConsumerGuard guard, Handler<Void> startedHandler) {
+    final SockJSHandler sockJSHandler = SockJSHandler.create(vertx);
+    final BridgeOptions options = new BridgeOptions();
+    options.addOutboundPermitted(new PermittedOptions().setAddressRegex(".*"));
+    options.addInboundPermitted(new PermittedOptions().setAddressRegex(".*"));
+    if (guard != null) {
+      sockJSHandler.bridge(options, new BridgeEventChain().add(guard));
+    } else {
+      sockJSHandler.bridge(options);
+    }
+
+    final Router router = Router.router(vertx);
+    router.route("/eventbus/*").handler(sockJSHandler);
+
+    vertx.createHttpServer(new HttpServerOptions().setHost("localhost").setPort(PORT))
+        .requestHandler(router::accept)
+        .listen(context.asyncAssertSuccess(server -> startedHandler.handle(null)));
+  }
+}
@@ -0,0 +1,148 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.handler.sockjs.BridgeEvent;
+import io.vertx.ext.web.handler.sockjs.BridgeOptions;
+import io.vertx.ext.web.handler.sockjs.SockJSSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server side counterpart of the adaptive heartbeat on the client. The bridge itself only accepts pings as sign of life, so
+ * a client they suppresses pings while events flow would get closed. This interceptor considers any incoming frame (ping,
+ * send, publish, register, unregister) and any frame delivered to the client, as the client don't ping while it receives.
+ * Sockets without any of them within the idle timeout get closed. A dead connection with outgoing traffic is detected by the
+ * transport, when the writes fail.
+ * <p>
+ * The ping timeout of the bridge must be disabled by {@link #applyTo(BridgeOptions)}. The {@link #DEFAULT_IDLE_TIMEOUT} is the
+ * same as the default ping timeout of the bridge, the default maximum interval of the adaptive heartbeat fits into it.
+ *
+ * @author Michel Werren
+ */
+public class SocketActivityTimeout implements BridgeEventInterceptor {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SocketActivityTimeout.class);
+
+  /**
+   * Ping timeout of the bridge, long enough to never hit.
+   */
+  private static final long BRIDGE_PING_TIMEOUT = TimeUnit.DAYS.toMillis(1);
+
+  /**
+   * Default ping timeout of the bridge.
+   */
+  public static final long DEFAULT_IDLE_TIMEOUT = new BridgeOptions().getPingTimeout();
+
+  private final Vertx vertx;
+
+  private final long idleTimeout;
+
+  private final long timerId;
+
+  private final Map<SockJSSocket, Activity> lastActivity = new ConcurrentHashMap<>();
+
+
+  /**
+   * With the {@link #DEFAULT_IDLE_TIMEOUT}.
+   *
+   * @param vertx
+   */
+  public SocketActivityTimeout(Vertx vertx) {
+    this(vertx, DEFAULT_IDLE_TIMEOUT);
+  }
+
+
+  /**
+   * @param vertx
+   * @param idleTimeout Milliseconds without incoming frame after the socket get closed. Must be greater than the maximum
+   *                    heartbeat interval of the clients.
+   */
+  public SocketActivityTimeout(Vertx vertx, long idleTimeout) {
+    this.vertx = vertx;
+    this.idleTimeout = idleTimeout;
+    this.timerId = vertx.setPeriodic(Math.max(1, idleTimeout / 4), id -> closeIdleSockets());
+  }
+
+
+  /**
+   * Disables the ping timeout of the bridge, as this interceptor takes over.
+   *
+   * @param options
+   * @return the given options
+   */
+  public BridgeOptions applyTo(BridgeOptions options) {
+    return options.setPingTimeout(BRIDGE_PING_TIMEOUT);
+  }
+
+
+  @Override
+  public boolean intercept(BridgeEvent event) {
+    switch (event.type()) {
+      case SOCKET_CREATED:
+        lastActivity.put(event.socket(), new Activity(Vertx.currentContext()));
+        break;
+      case SOCKET_PING:
+      case SEND:
+      case PUBLISH:
+      case REGISTER:
+      case UNREGISTER:
+      case RECEIVE:
+        lastActivity.computeIfAbsent(event.socket(), socket -> new Activity(Vertx.currentContext())).last =
+            System.currentTimeMillis();
+        break;
+      case SOCKET_CLOSED:
+        lastActivity.remove(event.socket());
+        break;
+      default:
+    }
+    return true;
+  }
+
+
+  private void closeIdleSockets() {
+    final long now = System.currentTimeMillis();
+    lastActivity.forEach((socket, activity) -> {
+      final long idle = now - activity.last;
+      if (idle >= idleTimeout) {
+        LOGGER.debug("Close socket {}, idle since {} ms", socket.writeHandlerID(), idle);
+        lastActivity.remove(socket);
+        activity.context.runOnContext(v -> socket.close());
+      }
+    });
+  }
+
+
+  /**
+   * @return Count of the currently watched sockets
+   */
+  public int watchedSockets() {
+    return lastActivity.size();
+  }
+
+
+  /**
+   * Stops to watch the sockets.
+   */
+  public void close() {
+    vertx.cancelTimer(timerId);
+  }
+
+
+  /**
+   * Last activity of a socket, with the context the socket belongs to.
+   */
+  private static final class Activity {
+    final Context context;
+
+    volatile long last = System.currentTimeMillis();
+
+
+    Activity(Context context) {
+      this.context = context;
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import ch.sourcemotion.vertx.dart.RawBridgeClient;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.ext.bridge.PermittedOptions;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.sockjs.BridgeOptions;
+import io.vertx.ext.web.handler.sockjs.SockJSHandler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author Michel Werren
+ */
+@RunWith(VertxUnitRunner.class)
+public class SocketActivityTimeoutTest {
+  private static final long IDLE_TIMEOUT = 1000;
+
+  private static final int PORT = 9001;
+
+  @Rule
+  public RunTestOnContext serverRule = new RunTestOnContext();
+
+  private Vertx vertx;
+
+
+  @Before
+  public void setUp(TestContext context) throws Exception {
+    vertx = serverRule.vertx();
+    final SocketActivityTimeout activityTimeout = new SocketActivityTimeout(vertx, IDLE_TIMEOUT);
+
+    final SockJSHandler sockJSHandler = SockJSHandler.create(vertx);
+    final BridgeOptions options = activityTimeout.applyTo(new BridgeOptions());
+    options.addOutboundPermitted(new PermittedOptions().setAddressRegex(".*"));
+    options.addInboundPermitted(new PermittedOptions().setAddressRegex(".*"));
+    sockJSHandler.bridge(options, new BridgeEventChain().add(activityTimeout));
+
+    final Router router = Router.router(vertx);
+    router.route("/eventbus/*").handler(sockJSHandler);
+
+    final HttpServer httpServer = vertx.createHttpServer(
+        new HttpServerOptions().setHost("localhost").setPort(PORT));
+    httpServer.requestHandler(router::accept).listen(PORT, context.asyncAssertSuccess());
+  }
+
+
+  /**
+   * Events without any ping keep the socket open, after that the idle socket get closed.
+   *
+   * @param context
+   */
+  @Test(timeout = 30000)
+  public void eventsKeepAliveIdleGetsClosed(TestContext context) {
+    final Async async = context.async();
+    final AtomicBoolean sending = new AtomicBoolean(true);
+
+    RawBridgeClient.connect(vertx, PORT, context.asyncAssertSuccess(client -> {
+      final long start = System.currentTimeMillis();
+      final long sendTimer = vertx.setPeriodic(IDLE_TIMEOUT / 5, id -> client.send("activity", 1));
+
+      client.closeHandler(v -> {
+        final long lifetime = System.currentTimeMillis() - start;
+        context.assertFalse(sending.get(), "Socket closed while events were sent");
+        // 3 times idle timeout events, then closed within idle timeout and check interval
+        context.assertTrue(lifetime < IDLE_TIMEOUT * 3 + IDLE_TIMEOUT * 2, "Idle socket closed too late");
+        async.complete();
+      });
+
+      vertx.setTimer(IDLE_TIMEOUT * 3, id -> {
+        sending.set(false);
+        vertx.cancelTimer(sendTimer);
+      });
+    }));
+  }
+
+
+  /**
+   * Frames delivered to the client keep the socket open too, as the client don't ping while it receives.
+   *
+   * @param context
+   */
+  @Test(timeout = 30000)
+  public void receivedKeepAliveIdleGetsClosed(TestContext context) {
+    final Async async = context.async();
+    final AtomicBoolean publishing = new AtomicBoolean(true);
+
+    RawBridgeClient.connect(vertx, PORT, context.asyncAssertSuccess(client -> {
+      final long start = System.currentTimeMillis();
+      client.register("activity.news");
+      final long publishTimer = vertx.setPeriodic(IDLE_TIMEOUT / 5, id -> vertx.eventBus().publish("activity.news", 1));
+
+      client.closeHandler(v -> {
+        final long lifetime = System.currentTimeMillis() - start;
+        context.assertFalse(publishing.get(), "Socket closed while events were received");
+        context.assertTrue(lifetime < IDLE_TIMEOUT * 3 + IDLE_TIMEOUT * 2, "Idle socket closed too late");
+        async.complete();
+      });
+
+      vertx.setTimer(IDLE_TIMEOUT * 3, id -> {
+        publishing.set(false);
+        vertx.cancelTimer(publishTimer);
+      });
+    }));
+  }
+}
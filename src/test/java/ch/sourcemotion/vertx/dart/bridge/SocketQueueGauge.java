@@ -0,0 +1,204 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import io.vertx.core.Handler;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.handler.sockjs.SockJSSocket;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbound queue state of a single bridged socket, maintained by {@link SlowConsumerGuard}.
+ * <p>
+ * For websocket transports, including SockJS sessions over websocket, the queue is the one of the websocket in bytes. For
+ * polling transports it's the message queue of the SockJS session in characters.
+ *
+ * @author Michel Werren
+ */
+public class SocketQueueGauge {
+  private final SockJSSocket socket;
+
+  /**
+   * Websocket under the socket, null for polling transports.
+   */
+  private final ServerWebSocket websocket;
+
+  private final AtomicLong delivered = new AtomicLong();
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  /**
+   * Latest held back message per address, for the conflate policy.
+   */
+  private final Map<String, JsonObject> conflated = new LinkedHashMap<>();
+
+  /**
+   * Reply addresses of the requests sent by the client, with their expiry time. Ordered by expiry.
+   */
+  private final Map<String, Long> replyAddresses = new LinkedHashMap<>();
+
+  private volatile boolean disconnected;
+
+
+  SocketQueueGauge(SockJSSocket socket) {
+    this.socket = socket;
+    this.websocket = TransportAccess.websocketOf(socket);
+  }
+
+
+  void setWriteQueueMaxSize(int maxQueueSize) {
+    socket.setWriteQueueMaxSize(maxQueueSize);
+    if (websocket != null) {
+      websocket.setWriteQueueMaxSize(maxQueueSize);
+    }
+  }
+
+
+  void drainHandler(Handler<Void> handler) {
+    if (websocket != null) {
+      websocket.drainHandler(handler);
+    } else {
+      socket.drainHandler(handler);
+    }
+  }
+
+
+  /**
+   * Remembers the reply address of a request sent by the client, so the reply can pass a full queue.
+   *
+   * @param replyAddress
+   * @param timeout      Milliseconds after the reply is no longer expected.
+   */
+  synchronized void expectReply(String replyAddress, long timeout) {
+    final long now = System.currentTimeMillis();
+    // Purge the expired, the request timed out
+    final Iterator<Long> expiries = replyAddresses.values().iterator();
+    while (expiries.hasNext() && expiries.next() < now) {
+      expiries.remove();
+    }
+    replyAddresses.put(replyAddress, now + timeout);
+  }
+
+
+  /**
+   * @param address
+   * @return <code>true</code> when a message on that address is the reply to a request of the client. The reply address
+   * is consumed then.
+   */
+  synchronized boolean isReply(String address) {
+    return address != null && replyAddresses.remove(address) != null;
+  }
+
+
+  void delivered() {
+    delivered.incrementAndGet();
+  }
+
+
+  void dropped() {
+    dropped.incrementAndGet();
+  }
+
+
+  void disconnected() {
+    disconnected = true;
+  }
+
+
+  /**
+   * Holds back that envelope. A previously held back envelope on the same address get replaced and counts as dropped.
+   *
+   * @param address
+   * @param envelope
+   */
+  synchronized void conflate(String address, JsonObject envelope) {
+    // Remove first, so the order reflects the latest update
+    if (conflated.remove(address) != null) {
+      dropped();
+    }
+    conflated.put(address, envelope);
+  }
+
+
+  /**
+   * Discards the held back envelope on that address, if any.
+   *
+   * @param address
+   */
+  synchronized void discardConflated(String address) {
+    if (conflated.remove(address) != null) {
+      dropped();
+    }
+  }
+
+
+  /**
+   * @return The held back envelopes in the order of their latest update. They are no longer held back afterwards.
+   */
+  synchronized List<JsonObject> takeConflated() {
+    final List<JsonObject> out = new ArrayList<>(conflated.values());
+    conflated.clear();
+    return out;
+  }
+
+
+  /**
+   * @return <code>true</code> when the write queue of the socket is full at the moment.
+   */
+  public boolean isWriteQueueFull() {
+    return websocket != null ? websocket.writeQueueFull() : socket.writeQueueFull();
+  }
+
+
+  /**
+   * @return Bytes queued on the websocket, or characters queued by the SockJS session of a polling transport. Bytes
+   * already handed over to the operating system are not included. -1 when unknown.
+   */
+  public long getQueueDepth() {
+    return websocket != null ? TransportAccess.pendingBytes(websocket) : TransportAccess.pendingCharacters(socket);
+  }
+
+
+  /**
+   * @return Count of messages they were written to the socket.
+   */
+  public long getDelivered() {
+    return delivered.get();
+  }
+
+
+  /**
+   * @return Count of messages they were dropped, including the ones replaced by conflation.
+   */
+  public long getDropped() {
+    return dropped.get();
+  }
+
+
+  /**
+   * @return Count of messages they are held back at the moment.
+   */
+  public synchronized int getConflated() {
+    return conflated.size();
+  }
+
+
+  /**
+   * @return <code>true</code> when the socket was closed as it was too slow.
+   */
+  public boolean isDisconnected() {
+    return disconnected;
+  }
+
+
+  @Override
+  public String toString() {
+    return "SocketQueueGauge{writeQueueFull=" + isWriteQueueFull() + ", queueDepth=" + getQueueDepth() + ", delivered=" + getDelivered() + ", dropped="
+        + getDropped() + ", conflated=" + getConflated() + ", disconnected=" + disconnected + '}';
+  }
+}
@@ -0,0 +1,121 @@
+package ch.sourcemotion.vertx.dart.bridge;
+
+import io.netty.channel.ChannelOutboundBuffer;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.net.impl.ConnectionBase;
+import io.vertx.ext.web.handler.sockjs.SockJSSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+
+/**
+ * Access to the transport under a bridged socket, as Vert.x don't expose it.
+ * <p>
+ * A SockJS session writes each message immediately to its websocket, so its own write queue never fills. The websocket under
+ * the session and the bytes pending on its channel are only reachable over the implementation classes of vertx-web and
+ * vertx-core 3.5. When they are not as expected, the access fails soft: no websocket and an unknown queue depth.
+ *
+ * @author Michel Werren
+ */
+final class TransportAccess {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TransportAccess.class);
+
+  private static final String SOCKJS_IMPL = "io.vertx.ext.web.handler.sockjs.impl.";
+
+  private static final Field SESSION_LISTENER = field(SOCKJS_IMPL + "SockJSSession", "listener");
+
+  private static final Field SESSION_MESSAGES_SIZE = field(SOCKJS_IMPL + "SockJSSession", "messagesSize");
+
+  private static final Field LISTENER_WEBSOCKET = field(SOCKJS_IMPL + "WebSocketTransport$WebSocketListener", "ws");
+
+  private static final Field RAW_WEBSOCKET = field(SOCKJS_IMPL + "RawWebSocketTransport$RawWSSockJSSocket", "ws");
+
+  private static final Field WEBSOCKET_CONNECTION = field("io.vertx.core.http.impl.WebSocketImplBase", "conn");
+
+
+  private TransportAccess() {
+  }
+
+
+  /**
+   * @param socket
+   * @return The websocket of the raw websocket transport or under a SockJS session on the websocket transport. Null for
+   * polling transports.
+   */
+  static ServerWebSocket websocketOf(SockJSSocket socket) {
+    if (isInstance(RAW_WEBSOCKET, socket)) {
+      return (ServerWebSocket) read(RAW_WEBSOCKET, socket);
+    }
+    if (isInstance(SESSION_LISTENER, socket)) {
+      final Object listener = read(SESSION_LISTENER, socket);
+      if (isInstance(LISTENER_WEBSOCKET, listener)) {
+        return (ServerWebSocket) read(LISTENER_WEBSOCKET, listener);
+      }
+    }
+    return null;
+  }
+
+
+  /**
+   * @param socket
+   * @return Whether that socket is a SockJS session, which frames the written messages itself.
+   */
+  static boolean isSession(SockJSSocket socket) {
+    return isInstance(SESSION_LISTENER, socket);
+  }
+
+
+  /**
+   * @param websocket
+   * @return Bytes written to that websocket, they are not yet handed over to the operating system. -1 when unknown.
+   */
+  static long pendingBytes(ServerWebSocket websocket) {
+    final Object connection = read(WEBSOCKET_CONNECTION, websocket);
+    if (!(connection instanceof ConnectionBase)) {
+      return -1;
+    }
+    final ChannelOutboundBuffer buffer = ((ConnectionBase) connection).channel().unsafe().outboundBuffer();
+    // Null when the channel is closed
+    return buffer == null ? 0 : buffer.totalPendingWriteBytes();
+  }
+
+
+  /**
+   * @param socket
+   * @return Characters of the messages queued by a SockJS session, until the next poll. -1 when unknown.
+   */
+  static long pendingCharacters(SockJSSocket socket) {
+    final Object size = isInstance(SESSION_MESSAGES_SIZE, socket) ? read(SESSION_MESSAGES_SIZE, socket) : null;
+    return size instanceof Integer ? (Integer) size : -1;
+  }
+
+
+  private static boolean isInstance(Field field, Object target) {
+    return field != null && field.getDeclaringClass().isInstance(target);
+  }
+
+
+  private static Object read(Field field, Object target) {
+    if (field == null || target == null) {
+      return null;
+    }
+    try {
+      return field.get(target);
+    } catch (IllegalAccessException e) {
+      return null;
+    }
+  }
+
+
+  private static Field field(String className, String name) {
+    try {
+      final Field field = Class.forName(className).getDeclaredField(name);
+      field.setAccessible(true);
+      return field;
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOGGER.warn("No access to {}.{}, queue state of the affected transports is unknown", className, name);
+      return null;
+    }
+  }
+}
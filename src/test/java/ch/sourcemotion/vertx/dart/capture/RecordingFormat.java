@@ -0,0 +1,169 @@
+package ch.sourcemotion.vertx.dart.capture;
+
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary format of a traffic recording.
+ * <p>
+ * Header: magic, version (int), start of the recording (epoch millis, long).
+ * <p>
+ * Record:
+ * <ul>
+ * <li>Nanoseconds since the previous record (varint)</li>
+ * <li>{@link io.vertx.ext.bridge.BridgeEventType} ordinal (byte)</li>
+ * <li>Session (varint)</li>
+ * <li>Address reference (varint): 0 no address, 1 new address follows and get the next index, otherwise index + 2. A new
+ * address is written as its length in bytes (varint) and the UTF-8 bytes, so without the 64 KB limit of
+ * {@link DataOutput#writeUTF(String)}</li>
+ * <li>Flags (byte), {@link #FLAG_EXPECTS_REPLY}, {@link #FLAG_REPLY}</li>
+ * <li>Body size (varint), characters of the JSON encoded body</li>
+ * <li>Header count (varint)</li>
+ * </ul>
+ * Replies are recorded without address, as their addresses are unique per message.
+ *
+ * @author Michel Werren
+ */
+final class RecordingFormat {
+  static final int MAGIC = 0x56585452;
+
+  static final int VERSION = 2;
+
+  static final int NO_ADDRESS = 0;
+
+  static final int NEW_ADDRESS = 1;
+
+  static final int ADDRESS_INDEX_OFFSET = 2;
+
+  /**
+   * The frame contains a reply address.
+   */
+  static final int FLAG_EXPECTS_REPLY = 1;
+
+  /**
+   * The frame is a reply, its address is not recorded.
+   */
+  static final int FLAG_REPLY = 1 << 1;
+
+
+  private RecordingFormat() {
+  }
+
+
+  static void writeVarint(DataOutput out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+
+  /**
+   * Characters of that value when JSON encoded, the same as <code>Json.encode(value).length()</code>. But without to
+   * encode, as this is called for each bridge event on the event loop. Values of other types than JSON ones get encoded.
+   *
+   * @param value
+   * @return
+   */
+  static int encodedSize(Object value) {
+    if (value == null) {
+      return 4;
+    }
+    if (value instanceof CharSequence) {
+      return stringSize((CharSequence) value);
+    }
+    if (value instanceof Boolean || value instanceof Number) {
+      return value.toString().length();
+    }
+    if (value instanceof JsonObject) {
+      return mapSize(((JsonObject) value).getMap());
+    }
+    if (value instanceof Map) {
+      return mapSize((Map<?, ?>) value);
+    }
+    if (value instanceof JsonArray) {
+      return listSize(((JsonArray) value).getList());
+    }
+    if (value instanceof List) {
+      return listSize((List<?>) value);
+    }
+    return Json.encode(value).length();
+  }
+
+
+  private static int mapSize(Map<?, ?> map) {
+    // Braces, and colon plus comma per entry
+    int size = 2 + Math.max(0, map.size() * 2 - 1);
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      size += stringSize(String.valueOf(entry.getKey())) + encodedSize(entry.getValue());
+    }
+    return size;
+  }
+
+
+  private static int listSize(List<?> list) {
+    int size = 2 + Math.max(0, list.size() - 1);
+    for (Object element : list) {
+      size += encodedSize(element);
+    }
+    return size;
+  }
+
+
+  /**
+   * Quoted and escaped like Jackson does.
+   */
+  private static int stringSize(CharSequence value) {
+    int size = value.length() + 2;
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (c == '"' || c == '\\' || c == '\n' || c == '\r' || c == '\t' || c == '\b' || c == '\f') {
+        size++;
+      } else if (c < 0x20) {
+        // Unicode escape of six characters
+        size += 5;
+      }
+    }
+    return size;
+  }
+
+
+  static void writeString(DataOutput out, String value) throws IOException {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarint(out, bytes.length);
+    out.write(bytes);
+  }
+
+
+  static String readString(DataInput in) throws IOException {
+    final long length = readVarint(in);
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("String of " + length + " bytes");
+    }
+    final byte[] bytes = new byte[(int) length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+
+  static long readVarint(DataInput in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      final byte b = in.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+}
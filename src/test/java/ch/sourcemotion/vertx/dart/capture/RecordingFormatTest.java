@@ -0,0 +1,56 @@
+package ch.sourcemotion.vertx.dart.capture;
+
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Michel Werren
+ */
+public class RecordingFormatTest {
+
+  /**
+   * The computed size must be the same as of the encoded body, as the replay sends bodies of that size.
+   */
+  @Test
+  public void encodedSize() {
+    for (Object body : Arrays.asList("", "plain", "quote \" backslash \\ slash /", "tab\tnewline\n\u0001\u001f", "äöü €",
+        0, -42L, 1.5d, 1e-10d, 3.25f, new BigDecimal("12.50"), true, false,
+        new JsonObject(), new JsonArray(),
+        new JsonObject().put("name", "value").put("nested", new JsonObject().put("list",
+            new JsonArray().add(1).add("two").addNull().add(new JsonArray())))
+            .put("map", Collections.singletonMap("key", Arrays.asList(1, 2))).putNull("none"),
+        new JsonObject().put("binary", new byte[]{1, 2, 3}))) {
+      assertEquals(String.valueOf(body), Json.encode(body).length(), RecordingFormat.encodedSize(body));
+    }
+  }
+
+
+  /**
+   * Addresses are not limited to 64 KB, like with {@link java.io.DataOutput#writeUTF(String)}.
+   */
+  @Test
+  public void stringRoundTrip() throws IOException {
+    final StringBuilder oversized = new StringBuilder();
+    while (oversized.length() <= 70000) {
+      oversized.append("address.\u00e4\u20ac.");
+    }
+    for (String value : Arrays.asList("", "news", oversized.toString())) {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      RecordingFormat.writeString(new DataOutputStream(bytes), value);
+      assertEquals(value, RecordingFormat.readString(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+    }
+  }
+}
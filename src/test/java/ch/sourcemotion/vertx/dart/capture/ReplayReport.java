@@ -0,0 +1,125 @@
+package ch.sourcemotion.vertx.dart.capture;
+
+import ch.sourcemotion.vertx.dart.LatencyRecorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a {@link TrafficReplayer} run.
+ *
+ * @author Michel Werren
+ */
+public class ReplayReport {
+  final LatencyRecorder replyLatency = new LatencyRecorder();
+
+  final LatencyRecorder scheduleLag = new LatencyRecorder();
+
+  long sessions;
+
+  long sent;
+
+  long published;
+
+  long skippedReplies;
+
+  long expectedReceived;
+
+  long received;
+
+  long replies;
+
+  long errors;
+
+  long durationNanos;
+
+
+  /**
+   * @return Count of replayed sockets, including the copies.
+   */
+  public long getSessions() {
+    return sessions;
+  }
+
+
+  public long getSent() {
+    return sent;
+  }
+
+
+  public long getPublished() {
+    return published;
+  }
+
+
+  /**
+   * @return Replies of the clients they were not replayed, as the server side reply addresses are unique per run.
+   */
+  public long getSkippedReplies() {
+    return skippedReplies;
+  }
+
+
+  /**
+   * @return Frames the clients received within the recording, multiplied by the session copies.
+   */
+  public long getExpectedReceived() {
+    return expectedReceived;
+  }
+
+
+  /**
+   * @return Frames the clients received on replay, without replies and errors.
+   */
+  public long getReceived() {
+    return received;
+  }
+
+
+  public long getReplies() {
+    return replies;
+  }
+
+
+  public long getErrors() {
+    return errors;
+  }
+
+
+  /**
+   * @return Time between request and its reply.
+   */
+  public LatencyRecorder getReplyLatency() {
+    return replyLatency;
+  }
+
+
+  /**
+   * @return How late the frames were sent, compared to the recorded time.
+   */
+  public LatencyRecorder getScheduleLag() {
+    return scheduleLag;
+  }
+
+
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+
+  @Override
+  public String toString() {
+    return "ReplayReport{" +
+        "sessions=" + sessions +
+        ", sent=" + sent +
+        ", published=" + published +
+        ", skippedReplies=" + skippedReplies +
+        ", expectedReceived=" + expectedReceived +
+        ", received=" + received +
+        ", replies=" + replies +
+        ", errors=" + errors +
+        ", durationMillis=" + TimeUnit.NANOSECONDS.toMillis(durationNanos) +
+        ", replyLatency=[" + replyLatency +
+        "], scheduleLag=[" + scheduleLag +
+        "]}";
+  }
+}
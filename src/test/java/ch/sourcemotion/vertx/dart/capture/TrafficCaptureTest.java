@@ -0,0 +1,181 @@
+package ch.sourcemotion.vertx.dart.capture;
+
+import ch.sourcemotion.vertx.dart.RawBridgeClient;
+import ch.sourcemotion.vertx.dart.bridge.BridgeEventChain;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.ext.bridge.BridgeEventType;
+import io.vertx.ext.bridge.PermittedOptions;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.sockjs.BridgeOptions;
+import io.vertx.ext.web.handler.sockjs.SockJSHandler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * @author Michel Werren
+ */
+@RunWith(VertxUnitRunner.class)
+public class TrafficCaptureTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TrafficCaptureTest.class);
+
+  private static final int PORT = 9004;
+
+  private static final int REQUESTS = 5;
+
+  private static final int PUBLISHES = 3;
+
+  private static final int COPIES = 3;
+
+  @Rule
+  public RunTestOnContext serverRule = new RunTestOnContext();
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Vertx vertx;
+
+  private Path file;
+
+  private TrafficRecorder recorder;
+
+
+  @Before
+  public void setUp(TestContext context) throws Exception {
+    vertx = serverRule.vertx();
+    vertx.eventBus().consumer("echo", msg -> msg.reply(msg.body()));
+
+    file = folder.newFile("traffic.rec").toPath();
+    recorder = new TrafficRecorder(vertx, file);
+
+    final SockJSHandler sockJSHandler = SockJSHandler.create(vertx);
+    final BridgeOptions options = new BridgeOptions()
+        .addOutboundPermitted(new PermittedOptions().setAddressRegex(".*"))
+        .addInboundPermitted(new PermittedOptions().setAddressRegex(".*"));
+    sockJSHandler.bridge(options, new BridgeEventChain().add(recorder));
+
+    final Router router = Router.router(vertx);
+    router.route("/eventbus/*").handler(sockJSHandler);
+
+    final HttpServer httpServer = vertx.createHttpServer(
+        new HttpServerOptions().setHost("localhost").setPort(PORT));
+    httpServer.requestHandler(router::accept).listen(PORT, context.asyncAssertSuccess());
+  }
+
+
+  /**
+   * Records requests, publishes and a server request the client replies to. Then replays the recording with several copies
+   * of each session.
+   *
+   * @param context
+   */
+  @Test(timeout = 30000)
+  public void recordAndReplay(TestContext context) {
+    recordAndReplay(context, TrafficReplayer.Transport.WEBSOCKET);
+  }
+
+
+  /**
+   * Same as {@link #recordAndReplay(TestContext)}, but replayed as SockJS sessions like the Dart clients connect.
+   *
+   * @param context
+   */
+  @Test(timeout = 30000)
+  public void recordAndReplayAsSockJSSessions(TestContext context) {
+    recordAndReplay(context, TrafficReplayer.Transport.SOCKJS_SESSION);
+  }
+
+
+  private void recordAndReplay(TestContext context, TrafficReplayer.Transport transport) {
+    final Async async = context.async();
+    record(context, v -> recorder.close(context.asyncAssertSuccess(closed -> {
+      try {
+        context.assertEquals(0L, recorder.dropped());
+        replay(context, TrafficRecording.read(file), transport, async);
+      } catch (Exception e) {
+        context.fail(e);
+      }
+    })));
+  }
+
+
+  private void replay(TestContext context, TrafficRecording recording, TrafficReplayer.Transport transport, Async async) {
+    final List<TrafficRecord> records = recording.getRecords();
+    LOGGER.info("Recorded {} events, {} bytes", records.size(), file.toFile().length());
+    context.assertEquals(2L, recording.count(BridgeEventType.SOCKET_CREATED));
+    context.assertEquals(2L, recording.count(BridgeEventType.SOCKET_CLOSED));
+    context.assertEquals(1L, recording.count(BridgeEventType.REGISTER));
+    context.assertEquals((long) PUBLISHES, recording.count(BridgeEventType.PUBLISH));
+    // Requests and the reply to the server request
+    context.assertEquals((long) REQUESTS + 1, recording.count(BridgeEventType.SEND));
+    // Replies, publishes and the server request
+    context.assertEquals((long) REQUESTS + PUBLISHES + 1, recording.count(BridgeEventType.RECEIVE));
+    records.stream().filter(TrafficRecord::isReply).forEach(record -> context.assertNull(record.getAddress()));
+    context.assertEquals(REQUESTS + 1L, records.stream().filter(TrafficRecord::isReply).count());
+    context.assertTrue(records.stream().anyMatch(record -> "echo".equals(record.getAddress())
+        && record.getBodySize() == "\"request\"".length() && record.expectsReply()));
+
+    final long recordedNanos = records.get(records.size() - 1).getOffsetNanos();
+    new TrafficReplayer(vertx, PORT, 2, COPIES, 500, transport).replay(recording, context.asyncAssertSuccess(report -> {
+      context.assertEquals(2L * COPIES, report.getSessions());
+      context.assertEquals((long) REQUESTS * COPIES, report.getSent());
+      context.assertEquals((long) REQUESTS * COPIES, report.getReplies());
+      context.assertEquals((long) PUBLISHES * COPIES, report.getPublished());
+      context.assertEquals((long) COPIES, report.getSkippedReplies());
+      context.assertEquals(0L, report.getErrors());
+      // Each publish reaches all copies of the registered session
+      context.assertEquals((long) PUBLISHES * COPIES * COPIES, report.getReceived());
+      context.assertTrue(report.getDurationNanos() >= recordedNanos / 2, "Replay faster than speed");
+      async.complete();
+    }));
+  }
+
+
+  private void record(TestContext context, Handler<Void> recorded) {
+    RawBridgeClient.connect(vertx, PORT, context.asyncAssertSuccess(subscriber -> {
+      subscriber.frameHandler(frame -> {
+        if (frame.getString("replyAddress") != null) {
+          subscriber.send(frame.getString("replyAddress"), "pong");
+        }
+      });
+      subscriber.register("news");
+
+      RawBridgeClient.connect(vertx, PORT, context.asyncAssertSuccess(requester -> {
+        final int[] replies = {0};
+        requester.frameHandler(frame -> {
+          if (++replies[0] == REQUESTS) {
+            for (int i = 0; i < PUBLISHES; i++) {
+              requester.publish("news", i);
+            }
+            vertx.eventBus().send("news", "ping", context.asyncAssertSuccess(reply ->
+                // The replayed sessions get closed at the same offset, so the frames need time to arrive
+                vertx.setTimer(200, delivered -> {
+                  subscriber.close();
+                  requester.close();
+                  // Until the bridge has noticed the closed sockets
+                  vertx.setTimer(200, id -> recorded.handle(null));
+                })));
+          }
+        });
+        // The lead gives the replayed subscriber copies time to connect and register before the publishes
+        for (int i = 0; i < REQUESTS; i++) {
+          vertx.setTimer(200 + 20 * i, id -> requester.send("echo", "request", "reply." + id));
+        }
+      }));
+    }));
+  }
+}
@@ -0,0 +1,108 @@
+package ch.sourcemotion.vertx.dart.capture;
+
+import io.vertx.ext.bridge.BridgeEventType;
+
+/**
+ * Single recorded bridge event.
+ *
+ * @author Michel Werren
+ */
+public class TrafficRecord {
+  private final long offsetNanos;
+
+  private final BridgeEventType type;
+
+  private final int session;
+
+  private final String address;
+
+  private final int flags;
+
+  private final int bodySize;
+
+  private final int headerCount;
+
+
+  TrafficRecord(long offsetNanos, BridgeEventType type, int session, String address, int flags, int bodySize,
+                int headerCount) {
+    this.offsetNanos = offsetNanos;
+    this.type = type;
+    this.session = session;
+    this.address = address;
+    this.flags = flags;
+    this.bodySize = bodySize;
+    this.headerCount = headerCount;
+  }
+
+
+  /**
+   * @return Nanoseconds since the start of the recording.
+   */
+  public long getOffsetNanos() {
+    return offsetNanos;
+  }
+
+
+  public BridgeEventType getType() {
+    return type;
+  }
+
+
+  /**
+   * @return Number of the socket, unique within the recording.
+   */
+  public int getSession() {
+    return session;
+  }
+
+
+  /**
+   * @return Address of the frame, <code>null</code> for replies and socket events.
+   */
+  public String getAddress() {
+    return address;
+  }
+
+
+  /**
+   * @return <code>true</code> when the frame contains a reply address.
+   */
+  public boolean expectsReply() {
+    return (flags & RecordingFormat.FLAG_EXPECTS_REPLY) != 0;
+  }
+
+
+  /**
+   * @return <code>true</code> when the frame is a reply.
+   */
+  public boolean isReply() {
+    return (flags & RecordingFormat.FLAG_REPLY) != 0;
+  }
+
+
+  /**
+   * @return Characters of the JSON encoded body.
+   */
+  public int getBodySize() {
+    return bodySize;
+  }
+
+
+  public int getHeaderCount() {
+    return headerCount;
+  }
+
+
+  @Override
+  public String toString() {
+    return "TrafficRecord{" +
+        "offsetNanos=" + offsetNanos +
+        ", type=" + type +
+        ", session=" + session +
+        ", address='" + address + '\'' +
+        ", flags=" + flags +
+        ", bodySize=" + bodySize +
+        ", headerCount=" + headerCount +
+        '}';
+  }
+}
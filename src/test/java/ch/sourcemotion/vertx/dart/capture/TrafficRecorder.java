@@ -0,0 +1,377 @@
+package ch.sourcemotion.vertx.dart.capture;
+
+import ch.sourcemotion.vertx.dart.bridge.BridgeEventInterceptor;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.bridge.BridgeEventType;
+import io.vertx.ext.web.handler.sockjs.BridgeEvent;
+import io.vertx.ext.web.handler.sockjs.SockJSSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the traffic of the bridge into an append-only file, to replay it later with {@link TrafficReplayer}. For each
+ * bridge event the time, socket, address and sizes are recorded, but no payload. See {@link RecordingFormat}.
+ * <p>
+ * Should be the first interceptor of the {@link ch.sourcemotion.vertx.dart.bridge.BridgeEventChain}, so also frames they
+ * get rejected later are recorded. It never rejects an event, also not when the recording fails.
+ * <p>
+ * The event loops only queue the records, the file is written by a dedicated thread. When the writer can't keep up and the
+ * queue is full, records are dropped and counted, the event loops are never blocked.
+ *
+ * @author Michel Werren
+ */
+public class TrafficRecorder implements BridgeEventInterceptor, AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TrafficRecorder.class);
+
+  private static final long FLUSH_INTERVAL = 1000;
+
+  private static final int QUEUE_SIZE = 65536;
+
+  /**
+   * Maximum count of pending reply addresses per socket, for replies they never come.
+   */
+  private static final int MAX_PENDING_REPLIES = 10000;
+
+  /**
+   * Queued by {@link #close(Handler)} after the last record.
+   */
+  private static final Record END = new Record(0, null, 0, null, 0, 0, 0);
+
+  private final Vertx vertx;
+
+  private final Path file;
+
+  private final DataOutputStream out;
+
+  private final BlockingQueue<Record> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+  private final Thread writer;
+
+  private final Map<SockJSSocket, Session> sessions = new ConcurrentHashMap<>();
+
+  private final AtomicInteger nextSession = new AtomicInteger();
+
+  private final AtomicLong recorded = new AtomicLong();
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  private final long startNanos = System.nanoTime();
+
+  private volatile boolean closed;
+
+  private final List<Handler<AsyncResult<Void>>> closeHandlers = new ArrayList<>();
+
+  /**
+   * Set when the writer thread has ended.
+   */
+  private AsyncResult<Void> closeResult;
+
+  /**
+   * Only accessed by the writer thread.
+   */
+  private final Map<String, Integer> addresses = new HashMap<>();
+
+  private long lastNanos = startNanos;
+
+
+  /**
+   * @param vertx
+   * @param file  Will be replaced, if already exists.
+   * @throws IOException
+   */
+  public TrafficRecorder(Vertx vertx, Path file) throws IOException {
+    this.vertx = vertx;
+    this.file = file;
+    out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)));
+    out.writeInt(RecordingFormat.MAGIC);
+    out.writeInt(RecordingFormat.VERSION);
+    out.writeLong(System.currentTimeMillis());
+    writer = new Thread(this::write, "traffic-recorder");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+
+  @Override
+  public boolean intercept(BridgeEvent event) {
+    if (event.type() != BridgeEventType.SOCKET_IDLE) {
+      record(event.type(), event.socket(), event.getRawMessage());
+    }
+    return true;
+  }
+
+
+  private void record(BridgeEventType type, SockJSSocket socket, JsonObject message) {
+    if (closed) {
+      return;
+    }
+    final long nanos = System.nanoTime();
+    final Session session = type == BridgeEventType.SOCKET_CLOSED ? sessions.remove(socket)
+        : sessions.computeIfAbsent(socket, s -> new Session(nextSession.getAndIncrement()));
+    if (session == null) {
+      // Closed without any event before
+      return;
+    }
+
+    String address = null;
+    int flags = 0;
+    int bodySize = 0;
+    int headerCount = 0;
+    if (message != null) {
+      address = message.getString("address");
+      if (address != null && session.isReply(address)) {
+        flags |= RecordingFormat.FLAG_REPLY;
+        address = null;
+      }
+      final String replyAddress = message.getString("replyAddress");
+      if (replyAddress != null) {
+        flags |= RecordingFormat.FLAG_EXPECTS_REPLY;
+        session.awaitReply(replyAddress);
+      }
+      final Object body = message.getValue("body");
+      bodySize = body == null ? 0 : RecordingFormat.encodedSize(body);
+      final JsonObject headers = message.getJsonObject("headers");
+      headerCount = headers == null ? 0 : headers.size();
+    }
+
+    if (!queue.offer(new Record(nanos, type, session.id, address, flags, bodySize, headerCount))
+        && dropped.getAndIncrement() == 0) {
+      LOGGER.warn("Recording into {} can't keep up, records get dropped", file);
+    }
+  }
+
+
+  /**
+   * Loop of the writer thread, until {@link #END} or a failure.
+   */
+  private void write() {
+    long lastFlush = System.nanoTime();
+    Throwable failure = null;
+    try {
+      while (true) {
+        final Record record = queue.poll(FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+        if (record == END) {
+          break;
+        }
+        if (record != null) {
+          write(record);
+          recorded.incrementAndGet();
+        }
+        if (System.nanoTime() - lastFlush >= TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL)) {
+          out.flush();
+          lastFlush = System.nanoTime();
+        }
+      }
+    } catch (IOException | InterruptedException e) {
+      LOGGER.error("Failed to record into " + file + ", recording stopped", e);
+      failure = e;
+    } finally {
+      closed = true;
+      queue.clear();
+      sessions.clear();
+      try {
+        out.close();
+      } catch (IOException e) {
+        LOGGER.debug("Failed to close recording " + file, e);
+        failure = failure == null ? e : failure;
+      }
+    }
+    LOGGER.info("Recorded {} events into {}, {} dropped", recorded.get(), file, dropped.get());
+    completeClose(failure);
+  }
+
+
+  private void write(Record record) throws IOException {
+    RecordingFormat.writeVarint(out, Math.max(0, record.nanos - lastNanos));
+    // Records of several event loops can be queued slightly out of order
+    lastNanos = Math.max(lastNanos, record.nanos);
+    out.writeByte(record.type.ordinal());
+    RecordingFormat.writeVarint(out, record.session);
+    writeAddress(record.address);
+    out.writeByte(record.flags);
+    RecordingFormat.writeVarint(out, record.bodySize);
+    RecordingFormat.writeVarint(out, record.headerCount);
+  }
+
+
+  private void writeAddress(String address) throws IOException {
+    if (address == null) {
+      RecordingFormat.writeVarint(out, RecordingFormat.NO_ADDRESS);
+      return;
+    }
+    final Integer index = addresses.get(address);
+    if (index == null) {
+      addresses.put(address, addresses.size());
+      RecordingFormat.writeVarint(out, RecordingFormat.NEW_ADDRESS);
+      RecordingFormat.writeString(out, address);
+    } else {
+      RecordingFormat.writeVarint(out, index + RecordingFormat.ADDRESS_INDEX_OFFSET);
+    }
+  }
+
+
+  /**
+   * @return Count of recorded events, they are written into the file.
+   */
+  public long recorded() {
+    return recorded.get();
+  }
+
+
+  /**
+   * @return Count of events they were not recorded, as the writer could not keep up.
+   */
+  public long dropped() {
+    return dropped.get();
+  }
+
+
+  /**
+   * Stops the recording. The handler is called on the context of the caller, when the file is complete.
+   *
+   * @param handler
+   */
+  public void close(Handler<AsyncResult<Void>> handler) {
+    final Context context = vertx.getOrCreateContext();
+    final Handler<AsyncResult<Void>> onContext = result -> context.runOnContext(v -> handler.handle(result));
+    synchronized (this) {
+      if (closeResult != null) {
+        onContext.handle(closeResult);
+        return;
+      }
+      closeHandlers.add(onContext);
+      if (closeHandlers.size() > 1) {
+        return;
+      }
+    }
+    closed = true;
+    // Nothing is queued anymore after closed, so this makes room only when the writer is behind
+    while (!queue.offer(END)) {
+      if (queue.poll() != null) {
+        dropped.incrementAndGet();
+      }
+    }
+  }
+
+
+  private void completeClose(Throwable failure) {
+    final List<Handler<AsyncResult<Void>>> handlers;
+    synchronized (this) {
+      closeResult = failure == null ? Future.succeededFuture() : Future.failedFuture(failure);
+      handlers = new ArrayList<>(closeHandlers);
+      closeHandlers.clear();
+    }
+    handlers.forEach(handler -> handler.handle(closeResult));
+  }
+
+
+  /**
+   * Stops the recording and waits until the file is complete. Blocking, so not to call on an event loop, see
+   * {@link #close(Handler)}.
+   */
+  @Override
+  public void close() throws IOException {
+    final Context context = Vertx.currentContext();
+    if (context != null && context.isEventLoopContext()) {
+      throw new IllegalStateException("Blocking close on the event loop, use close(Handler)");
+    }
+    close(result -> {
+    });
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while closing the recording " + file, e);
+    }
+  }
+
+
+  /**
+   * Recorded socket. Its events are raised on the same event loop, so the lock is not contended.
+   */
+  private static final class Session {
+    final int id;
+
+    /**
+     * Reply addresses of frames in both directions, the replies are recorded without address.
+     */
+    private final Set<String> replies = new LinkedHashSet<>();
+
+
+    Session(int id) {
+      this.id = id;
+    }
+
+
+    synchronized boolean isReply(String address) {
+      return replies.remove(address);
+    }
+
+
+    synchronized void awaitReply(String replyAddress) {
+      replies.add(replyAddress);
+      if (replies.size() > MAX_PENDING_REPLIES) {
+        final Iterator<String> oldest = replies.iterator();
+        oldest.next();
+        oldest.remove();
+      }
+    }
+  }
+
+
+  /**
+   * Event as handed over to the writer thread.
+   */
+  private static final class Record {
+    final long nanos;
+
+    final BridgeEventType type;
+
+    final int session;
+
+    final String address;
+
+    final int flags;
+
+    final int bodySize;
+
+    final int headerCount;
+
+
+    Record(long nanos, BridgeEventType type, int session, String address, int flags, int bodySize, int headerCount) {
+      this.nanos = nanos;
+      this.type = type;
+      this.session = session;
+      this.address = address;
+      this.flags = flags;
+      this.bodySize = bodySize;
+      this.headerCount = headerCount;
+    }
+  }
+}
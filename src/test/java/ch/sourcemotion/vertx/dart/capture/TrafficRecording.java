@@ -0,0 +1,103 @@
+package ch.sourcemotion.vertx.dart.capture;
+
+import io.vertx.ext.bridge.BridgeEventType;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Traffic recording, as written by {@link TrafficRecorder}.
+ *
+ * @author Michel Werren
+ */
+public class TrafficRecording {
+  private final long startEpochMillis;
+
+  private final List<TrafficRecord> records;
+
+
+  private TrafficRecording(long startEpochMillis, List<TrafficRecord> records) {
+    this.startEpochMillis = startEpochMillis;
+    this.records = records;
+  }
+
+
+  /**
+   * Reads the whole recording. A truncated last record, e.g. after a crash of the recording server, is ignored.
+   *
+   * @param file
+   * @return
+   * @throws IOException
+   */
+  public static TrafficRecording read(Path file) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != RecordingFormat.MAGIC) {
+        throw new IOException(file + " is no traffic recording");
+      }
+      final int version = in.readInt();
+      if (version != RecordingFormat.VERSION) {
+        throw new IOException("Unsupported recording version " + version);
+      }
+      final long startEpochMillis = in.readLong();
+
+      final BridgeEventType[] types = BridgeEventType.values();
+      final List<String> addresses = new ArrayList<>();
+      final List<TrafficRecord> records = new ArrayList<>();
+      long offsetNanos = 0;
+      try {
+        while (true) {
+          final long delta = RecordingFormat.readVarint(in);
+          final BridgeEventType type = types[in.readByte()];
+          final int session = (int) RecordingFormat.readVarint(in);
+          final int addressReference = (int) RecordingFormat.readVarint(in);
+          final String address;
+          if (addressReference == RecordingFormat.NO_ADDRESS) {
+            address = null;
+          } else if (addressReference == RecordingFormat.NEW_ADDRESS) {
+            address = RecordingFormat.readString(in);
+            addresses.add(address);
+          } else {
+            address = addresses.get(addressReference - RecordingFormat.ADDRESS_INDEX_OFFSET);
+          }
+          final int flags = in.readByte();
+          final int bodySize = (int) RecordingFormat.readVarint(in);
+          final int headerCount = (int) RecordingFormat.readVarint(in);
+          offsetNanos += delta;
+          records.add(new TrafficRecord(offsetNanos, type, session, address, flags, bodySize, headerCount));
+        }
+      } catch (EOFException endOfRecording) {
+        // Regular end, or truncated last record
+      }
+      return new TrafficRecording(startEpochMillis, Collections.unmodifiableList(records));
+    }
+  }
+
+
+  public long getStartEpochMillis() {
+    return startEpochMillis;
+  }
+
+
+  /**
+   * @return Records in the order of their occurrence.
+   */
+  public List<TrafficRecord> getRecords() {
+    return records;
+  }
+
+
+  /**
+   * @param type
+   * @return Count of records of that type.
+   */
+  public long count(BridgeEventType type) {
+    return records.stream().filter(record -> record.getType() == type).count();
+  }
+}
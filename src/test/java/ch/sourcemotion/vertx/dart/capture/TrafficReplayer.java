@@ -0,0 +1,303 @@
+package ch.sourcemotion.vertx.dart.capture;
+
+import ch.sourcemotion.vertx.dart.RawBridgeClient;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Replays a {@link TrafficRecording} against a bridge, over raw websocket clients or as SockJS sessions over websocket like
+ * the Dart clients connect, see {@link Transport}. The frames are sent at their recorded time, divided by the speed. Each recorded socket can get replayed by several sessions, to increase the load with the
+ * same shape.
+ * <p>
+ * Bodies are replayed as strings of the recorded size, as the payload is not recorded. Requests with reply are replayed
+ * with a new reply address, and the time until the reply arrives is measured. Replies of the clients to messages of the
+ * server are skipped, as the reply addresses of the server are different on each run.
+ * <p>
+ * Timers of Vert.x have millisecond resolution, so frames can be late up to about a millisecond. The lag is reported in
+ * {@link ReplayReport#getScheduleLag()}.
+ *
+ * @author Michel Werren
+ */
+public class TrafficReplayer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TrafficReplayer.class);
+
+  /**
+   * How the replayed sessions connect to the bridge. The recording doesn't contain the transport of the recorded sockets.
+   */
+  public enum Transport {
+    /**
+     * Raw websocket transport of the bridge, without SockJS framing.
+     */
+    WEBSOCKET,
+    /**
+     * SockJS session over the websocket transport, each frame in its own SockJS message frame. The path of the Dart clients
+     * when websocket is available.
+     */
+    SOCKJS_SESSION
+  }
+
+  private final Vertx vertx;
+
+  private final int port;
+
+  private final double speed;
+
+  private final int sessionCopies;
+
+  private final long drainMillis;
+
+  private final Transport transport;
+
+
+  /**
+   * Replays over the raw websocket transport.
+   *
+   * @param vertx
+   * @param port          Port of the bridge, mounted on "/eventbus/*".
+   * @param speed         1 for the recorded speed, 2 for twice as fast etc.
+   * @param sessionCopies Count of sessions per recorded socket.
+   * @param drainMillis   Time to wait for outstanding frames after the last record.
+   */
+  public TrafficReplayer(Vertx vertx, int port, double speed, int sessionCopies, long drainMillis) {
+    this(vertx, port, speed, sessionCopies, drainMillis, Transport.WEBSOCKET);
+  }
+
+
+  /**
+   * @param vertx
+   * @param port          Port of the bridge, mounted on "/eventbus/*".
+   * @param speed         1 for the recorded speed, 2 for twice as fast etc.
+   * @param sessionCopies Count of sessions per recorded socket.
+   * @param drainMillis   Time to wait for outstanding frames after the last record.
+   * @param transport     How the replayed sessions connect.
+   */
+  public TrafficReplayer(Vertx vertx, int port, double speed, int sessionCopies, long drainMillis, Transport transport) {
+    if (speed <= 0 || sessionCopies < 1) {
+      throw new IllegalArgumentException("Speed must be positive and at least one session copy");
+    }
+    this.vertx = vertx;
+    this.port = port;
+    this.speed = speed;
+    this.sessionCopies = sessionCopies;
+    this.drainMillis = drainMillis;
+    this.transport = transport;
+  }
+
+
+  public void replay(TrafficRecording recording, Handler<AsyncResult<ReplayReport>> handler) {
+    final Context context = vertx.getOrCreateContext();
+    context.runOnContext(v -> new Run(recording.getRecords(), handler).step());
+  }
+
+
+  /**
+   * State of a single replay. Only accessed from the context of the replayer.
+   */
+  private class Run {
+    private final List<TrafficRecord> records;
+
+    private final Handler<AsyncResult<ReplayReport>> handler;
+
+    private final ReplayReport report = new ReplayReport();
+
+    private final Map<Integer, Session> sessions = new HashMap<>();
+
+    private final Map<Integer, String> bodies = new HashMap<>();
+
+    private final long startNanos = System.nanoTime();
+
+    private int next;
+
+    private long nextReplyAddress;
+
+
+    Run(List<TrafficRecord> records, Handler<AsyncResult<ReplayReport>> handler) {
+      this.records = records;
+      this.handler = handler;
+    }
+
+
+    void step() {
+      final long elapsed = System.nanoTime() - startNanos;
+      while (next < records.size() && scheduledAt(records.get(next)) <= elapsed) {
+        final TrafficRecord record = records.get(next++);
+        report.scheduleLag.record(elapsed - scheduledAt(record));
+        for (int copy = 0; copy < sessionCopies; copy++) {
+          dispatch(record, record.getSession() * sessionCopies + copy);
+        }
+      }
+      if (next < records.size()) {
+        final long delayNanos = scheduledAt(records.get(next)) - (System.nanoTime() - startNanos);
+        vertx.setTimer(Math.max(1, TimeUnit.NANOSECONDS.toMillis(delayNanos)), id -> step());
+      } else {
+        report.durationNanos = System.nanoTime() - startNanos;
+        vertx.setTimer(Math.max(1, drainMillis), id -> finish());
+      }
+    }
+
+
+    private long scheduledAt(TrafficRecord record) {
+      return (long) (record.getOffsetNanos() / speed);
+    }
+
+
+    private void dispatch(TrafficRecord record, int sessionKey) {
+      // Also sockets they were opened before the recording started
+      final Session session = sessions.computeIfAbsent(sessionKey, key -> {
+        report.sessions++;
+        return new Session();
+      });
+      switch (record.getType()) {
+        case SEND:
+          if (record.isReply()) {
+            report.skippedReplies++;
+          } else if (record.expectsReply()) {
+            final String replyAddress = "replay." + nextReplyAddress++;
+            report.sent++;
+            session.execute(client -> {
+              session.pendingReplies.put(replyAddress, System.nanoTime());
+              client.send(record.getAddress(), bodyOf(record), replyAddress);
+            });
+          } else {
+            report.sent++;
+            session.execute(client -> client.send(record.getAddress(), bodyOf(record)));
+          }
+          break;
+        case PUBLISH:
+          if (record.isReply()) {
+            report.skippedReplies++;
+          } else {
+            report.published++;
+            session.execute(client -> client.publish(record.getAddress(), bodyOf(record)));
+          }
+          break;
+        case REGISTER:
+          session.execute(client -> client.register(record.getAddress()));
+          break;
+        case UNREGISTER:
+          session.execute(client -> client.unregister(record.getAddress()));
+          break;
+        case SOCKET_PING:
+          session.execute(RawBridgeClient::ping);
+          break;
+        case RECEIVE:
+          report.expectedReceived++;
+          break;
+        case SOCKET_CLOSED:
+          session.close();
+          break;
+        default:
+      }
+    }
+
+
+    private String bodyOf(TrafficRecord record) {
+      // Recorded size includes the quotes of the JSON string
+      return bodies.computeIfAbsent(record.getBodySize(), size -> {
+        final StringBuilder body = new StringBuilder();
+        for (int i = 2; i < size; i++) {
+          body.append('x');
+        }
+        return body.toString();
+      });
+    }
+
+
+    private void finish() {
+      sessions.values().forEach(Session::close);
+      LOGGER.info("Replay finished {}", report);
+      handler.handle(Future.succeededFuture(report));
+    }
+
+
+    /**
+     * Replayed socket. Frames are queued until connected.
+     */
+    private class Session {
+      private final Map<String, Long> pendingReplies = new HashMap<>();
+
+      private List<Consumer<RawBridgeClient>> pending = new ArrayList<>();
+
+      private RawBridgeClient client;
+
+      private boolean closed;
+
+
+      Session() {
+        final Handler<AsyncResult<RawBridgeClient>> connected = ar -> {
+          if (ar.failed()) {
+            LOGGER.warn("Replay session failed to connect", ar.cause());
+            report.errors++;
+            closed = true;
+            pending = null;
+            return;
+          }
+          client = ar.result();
+          client.frameHandler(this::onFrame);
+          final List<Consumer<RawBridgeClient>> queued = pending;
+          pending = null;
+          queued.forEach(action -> action.accept(client));
+          if (closed) {
+            client.close();
+          }
+        };
+        if (transport == Transport.SOCKJS_SESSION) {
+          RawBridgeClient.connectSession(vertx, port, connected);
+        } else {
+          RawBridgeClient.connect(vertx, port, connected);
+        }
+      }
+
+
+      void execute(Consumer<RawBridgeClient> action) {
+        if (closed) {
+          return;
+        }
+        if (client == null) {
+          pending.add(action);
+        } else {
+          action.accept(client);
+        }
+      }
+
+
+      void close() {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        if (client != null) {
+          client.close();
+        }
+      }
+
+
+      private void onFrame(JsonObject frame) {
+        if ("err".equals(frame.getString("type"))) {
+          report.errors++;
+          return;
+        }
+        final Long requestedAt = pendingReplies.remove(frame.getString("address"));
+        if (requestedAt != null) {
+          report.replyLatency.record(System.nanoTime() - requestedAt);
+          report.replies++;
+        } else {
+          report.received++;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,243 @@
+package ch.sourcemotion.vertx.dart.cluster;
+
+import ch.sourcemotion.vertx.dart.LatencyRecorder;
+import ch.sourcemotion.vertx.dart.RawBridgeClient;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.bridge.PermittedOptions;
+import io.vertx.ext.web.handler.sockjs.BridgeOptions;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static ch.sourcemotion.vertx.dart.cluster.ClusteredBridgeHarness.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Publish fan-out over clustered bridge nodes. The publishing client is connected to the first node, the subscribing
+ * clients are spread round robin over all nodes.
+ * <p>
+ * For each node count and client count it reports the delivery latency, separated for the clients on the publishing node
+ * and those on the other nodes, and the throughput in deliveries per second.
+ * <p>
+ * The matrix can be configured by the system properties "cluster.nodes" and "cluster.clients", e.g.
+ * <code>-Dcluster.nodes=1,2,4 -Dcluster.clients=10,100,1000</code>. "cluster.messages" is the count of published messages
+ * per phase, "cluster.publishIntervalMillis" the interval between them on the latency phase.
+ * <p>
+ * Starts Hazelcast clusters, so it runs only with <code>-Dtests.longRunning=true</code>.
+ *
+ * @author Michel Werren
+ */
+public class ClusterFanOutTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ClusterFanOutTest.class);
+
+  private static final int BASE_PORT = 9100;
+
+  private static final String ADDRESS = "fanout";
+
+  private static final int MESSAGES = Integer.getInteger("cluster.messages", 200);
+
+  /**
+   * Interval between the messages on the latency phase. The throughput phase publishes without pause.
+   */
+  private static final long PUBLISH_INTERVAL_NANOS =
+      TimeUnit.MILLISECONDS.toNanos(Integer.getInteger("cluster.publishIntervalMillis", 5));
+
+  private static final long DELIVERY_TIMEOUT_SECONDS = 120;
+
+  /**
+   * Clients are connected from a separate, non clustered instance.
+   */
+  private Vertx clientVertx;
+
+
+  @BeforeClass
+  public static void optIn() {
+    Assume.assumeTrue("Long running, enable with -Dtests.longRunning=true", Boolean.getBoolean("tests.longRunning"));
+  }
+
+
+  @Before
+  public void setUp() {
+    clientVertx = Vertx.vertx();
+  }
+
+
+  @After
+  public void tearDown() throws Exception {
+    ClusteredBridgeHarness.<Void>await(clientVertx::close);
+  }
+
+
+  @Test
+  public void crossNodeFanOut() throws Exception {
+    for (int nodeCount : intsOf("cluster.nodes", "1,2")) {
+      try (ClusteredBridgeHarness harness = ClusteredBridgeHarness.start(nodeCount, BASE_PORT,
+          ClusterFanOutTest::bridgeOptions, null)) {
+        for (int clientCount : intsOf("cluster.clients", "10,100")) {
+          fanOut(harness, clientCount);
+        }
+      }
+    }
+  }
+
+
+  private void fanOut(ClusteredBridgeHarness harness, int clientCount) throws Exception {
+    final Subscribers subscribers = new Subscribers(harness, clientCount);
+    final RawBridgeClient publisher = await(handler -> RawBridgeClient.connect(clientVertx, harness.port(0), handler));
+    try {
+      warmUp(publisher, subscribers);
+
+      subscribers.expect(MESSAGES);
+      final long latencyStart = System.nanoTime();
+      publish(publisher, PUBLISH_INTERVAL_NANOS);
+      assertTrue("Deliveries missing on latency phase", subscribers.awaitDeliveries());
+      final String local = subscribers.local.toString();
+      final String remote = subscribers.remote.toString();
+      final long latencyElapsed = subscribers.lastDelivery.get() - latencyStart;
+
+      subscribers.expect(MESSAGES);
+      final long throughputStart = System.nanoTime();
+      publish(publisher, 0);
+      assertTrue("Deliveries missing on throughput phase", subscribers.awaitDeliveries());
+      final long throughputElapsed = subscribers.lastDelivery.get() - throughputStart;
+
+      assertEquals(MESSAGES * clientCount, subscribers.deliveries.get());
+      LOGGER.info("nodes={}, clients={}, messages={}: local [{}], remote [{}], paced {} deliveries/s, burst {} deliveries/s" +
+              " [local {}, remote {}]", harness.nodeCount(), clientCount, MESSAGES, local, remote,
+          perSecond(MESSAGES * clientCount, latencyElapsed), perSecond(MESSAGES * clientCount, throughputElapsed),
+          subscribers.local, subscribers.remote);
+    } finally {
+      publisher.close();
+      subscribers.close();
+    }
+    assertTrue("Consumers not unregistered after close", harness.awaitUnregistered(ADDRESS));
+  }
+
+
+  /**
+   * Publishes until any client has received, as the registrations are propagated asynchronously over the cluster.
+   */
+  private void warmUp(RawBridgeClient publisher, Subscribers subscribers) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DELIVERY_TIMEOUT_SECONDS);
+    while (subscribers.warmedUp.size() < subscribers.clients.size()) {
+      assertTrue("Registrations not propagated over the cluster", System.nanoTime() < deadline);
+      publisher.publish(ADDRESS, new JsonObject().put("seq", -1));
+      TimeUnit.MILLISECONDS.sleep(100);
+    }
+    // Late warm up messages may still on the way
+    TimeUnit.MILLISECONDS.sleep(200);
+  }
+
+
+  private void publish(RawBridgeClient publisher, long intervalNanos) {
+    for (int seq = 0; seq < MESSAGES; seq++) {
+      publisher.publish(ADDRESS, new JsonObject().put("seq", seq).put("sentAt", System.nanoTime()));
+      if (intervalNanos > 0) {
+        LockSupport.parkNanos(intervalNanos);
+      }
+    }
+  }
+
+
+  private static BridgeOptions bridgeOptions() {
+    return new BridgeOptions()
+        .addInboundPermitted(new PermittedOptions().setAddress(ADDRESS))
+        .addOutboundPermitted(new PermittedOptions().setAddress(ADDRESS));
+  }
+
+
+  private static long perSecond(long count, long nanos) {
+    return count * TimeUnit.SECONDS.toNanos(1) / Math.max(1, nanos);
+  }
+
+
+  private static List<Integer> intsOf(String property, String defaultValue) {
+    final List<Integer> values = new ArrayList<>();
+    for (String value : Arrays.asList(System.getProperty(property, defaultValue).split(","))) {
+      values.add(Integer.valueOf(value.trim()));
+    }
+    return values;
+  }
+
+
+  /**
+   * Subscribing clients, spread over the nodes.
+   */
+  private class Subscribers {
+    final List<RawBridgeClient> clients = new ArrayList<>();
+
+    final Set<Integer> warmedUp = ConcurrentHashMap.newKeySet();
+
+    final AtomicLong deliveries = new AtomicLong();
+
+    final AtomicLong lastDelivery = new AtomicLong();
+
+    final LatencyRecorder local = new LatencyRecorder();
+
+    final LatencyRecorder remote = new LatencyRecorder();
+
+    volatile CountDownLatch pending = new CountDownLatch(0);
+
+
+    Subscribers(ClusteredBridgeHarness harness, int count) throws Exception {
+      for (int i = 0; i < count; i++) {
+        final int client = i;
+        final int node = i % harness.nodeCount();
+        final LatencyRecorder latencies = node == 0 ? local : remote;
+        final RawBridgeClient subscriber =
+            await(handler -> RawBridgeClient.connect(clientVertx, harness.port(node), handler));
+        subscriber.frameHandler(frame -> {
+          final JsonObject body = frame.getJsonObject("body");
+          if (body == null) {
+            return;
+          }
+          if (body.getInteger("seq") < 0) {
+            warmedUp.add(client);
+            return;
+          }
+          final long now = System.nanoTime();
+          latencies.record(now - body.getLong("sentAt"));
+          deliveries.incrementAndGet();
+          lastDelivery.accumulateAndGet(now, Math::max);
+          pending.countDown();
+        });
+        subscriber.register(ADDRESS);
+        clients.add(subscriber);
+      }
+    }
+
+
+    void expect(int messages) {
+      local.reset();
+      remote.reset();
+      deliveries.set(0);
+      pending = new CountDownLatch(messages * clients.size());
+    }
+
+
+    boolean awaitDeliveries() throws InterruptedException {
+      return pending.await(DELIVERY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+
+    void close() {
+      clients.forEach(RawBridgeClient::close);
+    }
+  }
+}
@@ -0,0 +1,211 @@
+package ch.sourcemotion.vertx.dart.cluster;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.config.NetworkConfig;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.sockjs.BridgeEvent;
+import io.vertx.ext.web.handler.sockjs.BridgeOptions;
+import io.vertx.ext.web.handler.sockjs.SockJSHandler;
+import io.vertx.spi.cluster.hazelcast.HazelcastClusterManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Starts several clustered Vert.x nodes within this JVM, on loopback. Each node serves its own SockJS event bus bridge under
+ * "/eventbus/*", on {@link #port(int)}. Like several bridge nodes behind a load balancer.
+ * <p>
+ * The nodes are started one after the other, so they join the same cluster. The methods are blocking, as they are used to
+ * orchestrate the nodes from the test thread.
+ *
+ * @author Michel Werren
+ */
+public class ClusteredBridgeHarness implements AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ClusteredBridgeHarness.class);
+
+  private static final long TIMEOUT_SECONDS = 60;
+
+  /**
+   * Name of the multi map where the cluster manager keeps the consumers per address.
+   */
+  private static final String SUBS_MAP_NAME = "__vertx.subs";
+
+  private final int basePort;
+
+  private final List<Vertx> nodes = new ArrayList<>();
+
+  private final List<HazelcastClusterManager> clusterManagers = new ArrayList<>();
+
+
+  private ClusteredBridgeHarness(int basePort) {
+    this.basePort = basePort;
+  }
+
+
+  /**
+   * @param nodeCount
+   * @param basePort            Port of the first node, the following nodes on the subsequent ports.
+   * @param bridgeOptions       Options for the bridge of each node.
+   * @param bridgeEventHandlers Creates the bridge event handler for each node, may null.
+   * @return
+   */
+  public static ClusteredBridgeHarness start(int nodeCount, int basePort, Supplier<BridgeOptions> bridgeOptions,
+                                             Supplier<Handler<BridgeEvent>> bridgeEventHandlers) throws Exception {
+    System.setProperty("hazelcast.logging.type", "slf4j");
+    System.setProperty("hazelcast.phone.home.enabled", "false");
+
+    final ClusteredBridgeHarness harness = new ClusteredBridgeHarness(basePort);
+    try {
+      for (int i = 0; i < nodeCount; i++) {
+        final HazelcastClusterManager clusterManager = new HazelcastClusterManager(loopbackConfig());
+        final Vertx node = await(handler -> Vertx.clusteredVertx(new VertxOptions().setClusterHost("127.0.0.1")
+            .setClusterManager(clusterManager), handler));
+        harness.nodes.add(node);
+        harness.clusterManagers.add(clusterManager);
+        harness.startBridge(node, basePort + i, bridgeOptions.get(),
+            bridgeEventHandlers == null ? null : bridgeEventHandlers.get());
+        LOGGER.info("Bridge node {} started on port {}", i, basePort + i);
+      }
+    } catch (Exception e) {
+      try {
+        harness.close();
+      } catch (IllegalStateException closeFailure) {
+        e.addSuppressed(closeFailure);
+      }
+      throw e;
+    }
+    return harness;
+  }
+
+
+  private void startBridge(Vertx node, int port, BridgeOptions options, Handler<BridgeEvent> eventHandler)
+      throws Exception {
+    final SockJSHandler sockJSHandler = SockJSHandler.create(node);
+    if (eventHandler == null) {
+      sockJSHandler.bridge(options);
+    } else {
+      sockJSHandler.bridge(options, eventHandler);
+    }
+    final Router router = Router.router(node);
+    router.route("/eventbus/*").handler(sockJSHandler);
+    ClusteredBridgeHarness.<HttpServer>await(handler -> node.createHttpServer(new HttpServerOptions().setHost("localhost").setPort(port))
+        .requestHandler(router::accept).listen(handler));
+  }
+
+
+  /**
+   * Default cluster configuration of Vert.x, but with TCP join on loopback instead multicast.
+   */
+  private static Config loopbackConfig() {
+    final Config config = new HazelcastClusterManager().loadConfig();
+    final NetworkConfig network = config.getNetworkConfig();
+    network.setPort(5701).setPortAutoIncrement(true);
+    network.getInterfaces().setEnabled(true).setInterfaces(Collections.singletonList("127.0.0.1"));
+    final JoinConfig join = network.getJoin();
+    join.getMulticastConfig().setEnabled(false);
+    join.getAwsConfig().setEnabled(false);
+    join.getTcpIpConfig().setEnabled(true).setMembers(Collections.singletonList("127.0.0.1"));
+    return config;
+  }
+
+
+  public int nodeCount() {
+    return nodes.size();
+  }
+
+
+  public Vertx node(int index) {
+    return nodes.get(index);
+  }
+
+
+  public int port(int index) {
+    return basePort + index;
+  }
+
+
+  /**
+   * @param address
+   * @return Count of event bus consumers on that address over the whole cluster.
+   */
+  public int clusterRegistrations(String address) {
+    return clusterManagers.get(0).getHazelcastInstance().getMultiMap(SUBS_MAP_NAME).valueCount(address);
+  }
+
+
+  /**
+   * Waits until the consumers of that address are unregistered, as this happens asynchronously after the sockets are closed.
+   *
+   * @param address
+   * @return <code>true</code> when all were unregistered within the timeout.
+   */
+  public boolean awaitUnregistered(String address) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+    while (clusterRegistrations(address) > 0) {
+      if (System.nanoTime() > deadline) {
+        return false;
+      }
+      TimeUnit.MILLISECONDS.sleep(50);
+    }
+    return true;
+  }
+
+
+  /**
+   * Closes all nodes, the last started first. A node they fails to close doesn't prevent the others from being closed.
+   *
+   * @throws IllegalStateException When a node failed to close or when interrupted, the interrupt flag is then restored.
+   */
+  @Override
+  public void close() {
+    IllegalStateException failure = null;
+    for (int i = nodes.size() - 1; i >= 0; i--) {
+      final Vertx node = nodes.remove(i);
+      clusterManagers.remove(i);
+      try {
+        ClusteredBridgeHarness.<Void>await(node::close);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while closing the cluster nodes", e);
+      } catch (Exception e) {
+        if (failure == null) {
+          failure = new IllegalStateException("Failed to close the cluster nodes", e);
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+
+  /**
+   * Waits for the result of an asynchronous operation.
+   */
+  public static <T> T await(Handler<Handler<AsyncResult<T>>> operation) throws Exception {
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    operation.handle(ar -> {
+      if (ar.succeeded()) {
+        result.complete(ar.result());
+      } else {
+        result.completeExceptionally(ar.cause());
+      }
+    });
+    return result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+}
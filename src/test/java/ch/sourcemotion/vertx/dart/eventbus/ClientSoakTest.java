@@ -0,0 +1,159 @@
+package ch.sourcemotion.vertx.dart.eventbus;
+
+import ch.sourcemotion.vertx.dart.AbstractClientServerTest;
+import ch.sourcemotion.vertx.dart.bridge.BridgeEventChain;
+import ch.sourcemotion.vertx.dart.soak.HandlerCountingMetrics;
+import ch.sourcemotion.vertx.dart.soak.LeakDetector;
+import ch.sourcemotion.vertx.dart.soak.SessionCounter;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.bridge.PermittedOptions;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.sockjs.BridgeOptions;
+import io.vertx.ext.web.handler.sockjs.SockJSHandler;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Soak test of the Dart client. The client runs cycles of connect, register, request with reply, reply on a server
+ * request, publish, unregister and close. Meanwhile the heap, the open sockets and the event bus handlers of the server
+ * are sampled, together with the consumers, handlers and pending replies the client reports after each cycle.
+ * <p>
+ * Runs shortly by default, use e.g. <code>-Dsoak.seconds=3600</code> for a real soak. Runs only with
+ * <code>-Dtests.longRunning=true</code>, like the other long running tests.
+ *
+ * @author Michel Werren
+ */
+@RunWith(VertxUnitRunner.class)
+public class ClientSoakTest extends AbstractClientServerTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ClientSoakTest.class);
+
+  private static final long SECONDS = Long.getLong("soak.seconds", 60);
+
+  private static final long HEAP_TOLERANCE = Long.getLong("soak.heapToleranceMb", 16) * 1024 * 1024;
+
+  private static final long REPLY_TIMEOUT = 2000;
+
+  private final HandlerCountingMetrics metrics = new HandlerCountingMetrics();
+
+  private final SessionCounter sessions = new SessionCounter();
+
+  private final AtomicLong clientCycles = new AtomicLong();
+
+  private final AtomicLong clientConsumers = new AtomicLong();
+
+  private final AtomicLong clientHandlers = new AtomicLong();
+
+  private final AtomicLong clientPendingReplies = new AtomicLong();
+
+  @Rule
+  public RunTestOnContext serverRule = new RunTestOnContext(() -> Vertx.vertx(metrics.applyTo(new VertxOptions())));
+
+  private Vertx vertx;
+
+  private LeakDetector detector;
+
+
+  @BeforeClass
+  public static void optIn() {
+    Assume.assumeTrue("Long running, enable with -Dtests.longRunning=true", Boolean.getBoolean("tests.longRunning"));
+  }
+
+
+  @Before
+  public void setUp() throws Exception {
+    prepareClientsideTest("soak_test");
+
+    vertx = serverRule.vertx();
+    HttpServer httpServer = vertx.createHttpServer(
+        new HttpServerOptions().setHost("localhost").setPort(9000));
+
+    final Router router = Router.router(vertx);
+
+    SockJSHandler sockJSHandler = SockJSHandler.create(vertx);
+    BridgeOptions options = new BridgeOptions().setReplyTimeout(REPLY_TIMEOUT);
+    options.addOutboundPermitted(new PermittedOptions().setAddressRegex(".*"));
+    options.addInboundPermitted(new PermittedOptions().setAddressRegex(".*"));
+    sockJSHandler.bridge(options, new BridgeEventChain().add(sessions));
+
+    router.route("/eventbus/*").handler(sockJSHandler);
+
+    httpServer.requestHandler(router::accept);
+
+    httpServer.listen();
+
+    detector = new LeakDetector(Math.max(1000, TimeUnit.SECONDS.toMillis(SECONDS) / 30))
+        .trackHeap(HEAP_TOLERANCE)
+        .track("sessions", sessions::open, 5)
+        .track("handlers", metrics::handlers, 10)
+        .track("clientConsumers", clientConsumers::get, 2)
+        .track("clientHandlers", clientHandlers::get, 2)
+        .track("clientPendingReplies", clientPendingReplies::get, 2);
+
+    LOGGER.info("Test server started");
+  }
+
+
+  @After
+  public void tearDown() throws Exception {
+    detector.close();
+  }
+
+
+  @Test(timeout = 4200000)
+  public void noUpwardTrends(TestContext context) throws Exception {
+    vertx.exceptionHandler(context.exceptionHandler());
+
+    final Async async = context.async(2);
+
+    vertx.eventBus().consumer("soak.config", message -> {
+      message.reply(new JsonObject().put("seconds", SECONDS));
+      detector.start();
+    });
+    vertx.eventBus().consumer("soak.echo", message -> message.reply(message.body()));
+    vertx.eventBus().<JsonObject>consumer("soak.client.stats", message -> {
+      final JsonObject stats = message.body();
+      clientCycles.set(stats.getLong("cycles"));
+      clientConsumers.set(stats.getLong("consumers"));
+      clientHandlers.set(stats.getLong("handlers"));
+      clientPendingReplies.set(stats.getLong("pendingReplies"));
+    });
+    // Server requests the clients reply to, or not when they are closed meanwhile
+    vertx.setPeriodic(100, id -> vertx.eventBus().send("soak.news", "request",
+        new DeliveryOptions().setSendTimeout(REPLY_TIMEOUT), reply -> {
+        }));
+
+    vertx.eventBus().consumer("soak.done", message -> {
+      detector.sample();
+      final List<String> trends = detector.upwardTrends();
+      LOGGER.info("Client soak of {} cycles done. {}", clientCycles.get(), detector.summary());
+
+      context.assertTrue(clientCycles.get() > 0);
+      context.assertTrue(trends.isEmpty(), "Upward trends: " + trends);
+      message.reply(new JsonArray(trends));
+      async.countDown();
+    });
+
+    startTestClient(context, async, "test/soak_test.dart");
+  }
+}
@@ -0,0 +1,145 @@
+package ch.sourcemotion.vertx.dart.eventbus;
+
+import ch.sourcemotion.vertx.dart.AbstractClientServerTest;
+import ch.sourcemotion.vertx.dart.bridge.BridgeEventChain;
+import ch.sourcemotion.vertx.dart.bridge.SocketActivityTimeout;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.ext.bridge.BridgeEventType;
+import io.vertx.ext.bridge.PermittedOptions;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.sockjs.BridgeOptions;
+import io.vertx.ext.web.handler.sockjs.SockJSHandler;
+import io.vertx.ext.web.handler.sockjs.SockJSSocket;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ping frames of the fixed interval ping against the adaptive heartbeat.
+ *
+ * @author Michel Werren
+ */
+@RunWith(VertxUnitRunner.class)
+public class HeartbeatTest extends AbstractClientServerTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(HeartbeatTest.class);
+
+  @Rule
+  public RunTestOnContext serverRule = new RunTestOnContext();
+
+  private Vertx vertx;
+
+  private final Map<SockJSSocket, String> strategyBySocket = new HashMap<>();
+
+  private final Map<SockJSSocket, Integer> pingsBySocket = new HashMap<>();
+
+  private final Map<SockJSSocket, Long> createdBySocket = new HashMap<>();
+
+  /**
+   * Socket of the inbound only phase, with the count of its pings before.
+   */
+  private SockJSSocket inboundSocket;
+
+  private int inboundPingsBefore;
+
+
+  @Before
+  public void setUp() throws Exception {
+    prepareClientsideTest("heartbeat_test");
+
+    vertx = serverRule.vertx();
+    HttpServer httpServer = vertx.createHttpServer(
+        new HttpServerOptions().setHost("localhost").setPort(9000));
+
+    final Router router = Router.router(vertx);
+
+    final SocketActivityTimeout activityTimeout = new SocketActivityTimeout(vertx);
+    SockJSHandler sockJSHandler = SockJSHandler.create(vertx);
+    BridgeOptions options = activityTimeout.applyTo(new BridgeOptions());
+    options.addOutboundPermitted(new PermittedOptions().setAddressRegex(".*"));
+    options.addInboundPermitted(new PermittedOptions().setAddressRegex(".*"));
+    sockJSHandler.bridge(options, new BridgeEventChain().add(activityTimeout).add(event ->
+    {
+      final SockJSSocket socket = event.socket();
+      if (event.type() == BridgeEventType.SOCKET_CREATED) {
+        createdBySocket.put(socket, System.currentTimeMillis());
+      } else if (event.type() == BridgeEventType.SOCKET_PING) {
+        pingsBySocket.merge(socket, 1, Integer::sum);
+      } else if (event.type() == BridgeEventType.SEND && "heartbeat.strategy".equals(
+          event.getRawMessage().getString("address"))) {
+        strategyBySocket.put(socket, event.getRawMessage().getString("body"));
+      } else if (event.type() == BridgeEventType.SEND && "heartbeat.inbound.start".equals(
+          event.getRawMessage().getString("address"))) {
+        inboundSocket = socket;
+        inboundPingsBefore = pingsBySocket.getOrDefault(socket, 0);
+      }
+      return true;
+    }));
+
+    router.route("/eventbus/*").handler(sockJSHandler);
+
+    httpServer.requestHandler(router::accept);
+
+    httpServer.listen();
+
+    LOGGER.info("Test server started");
+  }
+
+
+  /**
+   * The client runs a fixed interval and an adaptive heartbeat connection in parallel, with the same traffic.
+   *
+   * @param context
+   * @throws Exception
+   */
+  @Test(timeout = 120000)
+  public void adaptiveHeartbeatSendsLessPings(TestContext context) throws Exception {
+    vertx.exceptionHandler(context.exceptionHandler());
+
+    final Async async = context.async(2);
+
+    vertx.eventBus().consumer("heartbeat.done", message ->
+    {
+      final long now = System.currentTimeMillis();
+      final Map<String, Double> pingsPerMinute = new HashMap<>();
+      strategyBySocket.forEach((socket, strategy) -> {
+        final long lifetime = now - createdBySocket.get(socket);
+        final int pings = pingsBySocket.getOrDefault(socket, 0);
+        pingsPerMinute.put(strategy, pings * (double) TimeUnit.MINUTES.toMillis(1) / lifetime);
+      });
+      LOGGER.info("Ping frames per connection per minute: {}", pingsPerMinute);
+
+      context.assertTrue(pingsPerMinute.containsKey("fixed") && pingsPerMinute.containsKey("adaptive"));
+      context.assertTrue(pingsPerMinute.get("adaptive") < pingsPerMinute.get("fixed"));
+      message.reply(null);
+      async.countDown();
+    });
+
+    // Inbound only phase, the client must not ping while it receives
+    final long[] inboundTimer = new long[1];
+    vertx.eventBus().consumer("heartbeat.inbound.start", message -> {
+      inboundTimer[0] = vertx.setPeriodic(250, id -> vertx.eventBus().publish("heartbeat.inbound", "news"));
+      message.reply(null);
+    });
+    vertx.eventBus().consumer("heartbeat.inbound.stop", message -> {
+      vertx.cancelTimer(inboundTimer[0]);
+      final int pings = pingsBySocket.getOrDefault(inboundSocket, 0) - inboundPingsBefore;
+      LOGGER.info("Pings while inbound messages arrived: {}", pings);
+      message.reply(pings);
+    });
+
+    startTestClient(context, async, "test/heartbeat_test.dart");
+  }
+}
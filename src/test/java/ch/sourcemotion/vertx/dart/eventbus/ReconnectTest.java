@@ -1,9 +1,12 @@
 package ch.sourcemotion.vertx.dart.eventbus;
 
 import ch.sourcemotion.vertx.dart.AbstractClientServerTest;
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.bridge.PermittedOptions;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
@@ -66,19 +69,14 @@ public class ReconnectTest extends AbstractClientServerTest {
           final HttpServer reopened = startServer(context);
           // Give client time to establish connection
           vertx.setTimer(2000, sendToClient -> {
-            vertx.eventBus().send("after", null, reply -> {
-
+            sendAfterReconnect(context, () -> {
               // Close again to test the reattachment on the client side
               reopened.close();
               try {
                 // Restart directly
                 startServer(context);
                 vertx.setTimer(4000, sendToClientSecond -> {
-                  vertx.eventBus().send("after", null, secondReply -> {
-
-                    // Close again to test the reattachment on the client side
-                    async.countDown();
-                  });
+                  sendAfterReconnect(context, async::countDown);
                 });
               } catch (IOException e) {
                 e.printStackTrace();
@@ -93,6 +91,37 @@ public class ReconnectTest extends AbstractClientServerTest {
   }
 
 
+  /**
+   * Sends to the event bus of each transport cache mode on the client. Only the one with the transport cache must reconnect
+   * with the cached transport, so without negotiation.
+   *
+   * @param context
+   * @param done    Called when both have replied
+   */
+  private void sendAfterReconnect(TestContext context, Runnable done) {
+    vertx.eventBus().send("after.none", null, noneReply -> {
+      assertReconnect(context, noneReply, false);
+      vertx.eventBus().send("after.memory", null, memoryReply -> {
+        assertReconnect(context, memoryReply, true);
+        done.run();
+      });
+    });
+  }
+
+
+  /**
+   * @param context
+   * @param reply   Times to open of the initial connection and the reconnection, as measured by the client.
+   * @param cached  Whether the reconnection must be opened with the cached transport
+   */
+  private void assertReconnect(TestContext context, AsyncResult<Message<Object>> reply, boolean cached) {
+    context.assertTrue(reply.succeeded());
+    final JsonObject openTimes = (JsonObject) reply.result().body();
+    LOGGER.info("Time to open (client side): {}", openTimes);
+    context.assertEquals(cached, openTimes.getBoolean("reconnectCached"), "Reconnect with the cached transport: " + cached);
+  }
+
+
   /**
    * Starts the Sockjs bridge server with a test specific configuration.
    *
@@ -0,0 +1,106 @@
+package ch.sourcemotion.vertx.dart.eventbus;
+
+import ch.sourcemotion.vertx.dart.AbstractClientServerTest;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.bridge.PermittedOptions;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.sockjs.BridgeOptions;
+import io.vertx.ext.web.handler.sockjs.SockJSHandler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the server hits of a simulated page load, where many components request the same config.
+ *
+ * @author Michel Werren
+ */
+@RunWith(VertxUnitRunner.class)
+public class ReplyCoalescingTest extends AbstractClientServerTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ReplyCoalescingTest.class);
+
+  @Rule
+  public RunTestOnContext serverRule = new RunTestOnContext();
+
+  private Vertx vertx;
+
+
+  @Before
+  public void setUp() throws Exception {
+    prepareClientsideTest("reply_coalescing_test");
+
+    vertx = serverRule.vertx();
+    HttpServer httpServer = vertx.createHttpServer(
+        new HttpServerOptions().setHost("localhost").setPort(9000));
+
+    final Router router = Router.router(vertx);
+
+    SockJSHandler sockJSHandler = SockJSHandler.create(vertx);
+    BridgeOptions options = new BridgeOptions();
+    options.addOutboundPermitted(new PermittedOptions().setAddressRegex(".*"));
+    options.addInboundPermitted(new PermittedOptions().setAddressRegex(".*"));
+    sockJSHandler.bridge(options);
+
+    router.route("/eventbus/*").handler(sockJSHandler);
+
+    httpServer.requestHandler(router::accept);
+
+    httpServer.listen();
+
+    LOGGER.info("Test server started");
+  }
+
+
+  /**
+   * The client requests the config 41 times. Only the first request and the one after the invalidation should reach the
+   * server.
+   *
+   * @param context
+   * @throws Exception
+   */
+  @Test(timeout = 60000)
+  public void coalescingOnPageLoad(TestContext context) throws Exception {
+    vertx.exceptionHandler(context.exceptionHandler());
+
+    final Async async = context.async(2);
+    final AtomicInteger serverHits = new AtomicInteger();
+
+    vertx.eventBus().consumer("config.get", message ->
+    {
+      serverHits.incrementAndGet();
+      // Expects a reply, so the shared reply on the client could be replied without protection
+      message.reply(new JsonObject().put("value", "config"), new DeliveryOptions().setSendTimeout(1000), ack -> {
+      });
+    });
+
+    vertx.eventBus().consumer("config.change", message ->
+    {
+      vertx.eventBus().publish("config.invalidate", "config.get");
+      message.reply(null);
+    });
+
+    vertx.eventBus().consumer("config.done", message ->
+    {
+      final int clientRequests = (Integer) message.body();
+      LOGGER.info("Client requests: {}, server hits: {}", clientRequests, serverHits.get());
+      context.assertEquals(2, serverHits.get());
+      message.reply(null);
+      async.countDown();
+    });
+
+    startTestClient(context, async, "test/reply_coalescing_test.dart");
+  }
+}
@@ -0,0 +1,194 @@
+package ch.sourcemotion.vertx.dart.soak;
+
+import ch.sourcemotion.vertx.dart.RawBridgeClient;
+import ch.sourcemotion.vertx.dart.bridge.BridgeEventChain;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.ext.bridge.PermittedOptions;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.sockjs.BridgeOptions;
+import io.vertx.ext.web.handler.sockjs.SockJSHandler;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Soak test of the bridge. Clients run cycles of connect, register, request with reply, reply on a server request, publish,
+ * unregister and close, over and over. Meanwhile the heap, the open sockets and the registered event bus handlers are
+ * sampled. The test fails when any of them has an upward trend, or they don't return to the initial state after the
+ * clients have stopped.
+ * <p>
+ * Runs shortly by default. For a real soak, use e.g. <code>-Dsoak.seconds=3600 -Dsoak.clients=200</code>. The heap
+ * tolerance in MB can be set with "soak.heapToleranceMb".
+ * <p>
+ * Runs only with <code>-Dtests.longRunning=true</code>, like the other long running tests.
+ *
+ * @author Michel Werren
+ */
+public class BridgeSoakTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BridgeSoakTest.class);
+
+  private static final int PORT = 9005;
+
+  private static final long SECONDS = Long.getLong("soak.seconds", 20);
+
+  private static final int CLIENTS = Integer.getInteger("soak.clients", 20);
+
+  private static final long HEAP_TOLERANCE = Long.getLong("soak.heapToleranceMb", 16) * 1024 * 1024;
+
+  private static final long SAMPLE_INTERVAL = Math.max(1000, TimeUnit.SECONDS.toMillis(SECONDS) / 30);
+
+  private static final long REPLY_TIMEOUT = 2000;
+
+  private static final long CYCLE_PAUSE = 10;
+
+  private final HandlerCountingMetrics metrics = new HandlerCountingMetrics();
+
+  private final SessionCounter sessions = new SessionCounter();
+
+  private final AtomicLong cycles = new AtomicLong();
+
+  private volatile boolean running = true;
+
+  private Vertx vertx;
+
+  private Vertx clientVertx;
+
+
+  @BeforeClass
+  public static void optIn() {
+    Assume.assumeTrue("Long running, enable with -Dtests.longRunning=true", Boolean.getBoolean("tests.longRunning"));
+  }
+
+
+  @Before
+  public void setUp() throws Exception {
+    vertx = Vertx.vertx(metrics.applyTo(new VertxOptions()));
+    clientVertx = Vertx.vertx();
+
+    vertx.eventBus().consumer("soak.echo", msg -> msg.reply(msg.body()));
+    // Server requests the clients reply to, or not when they are closed meanwhile
+    vertx.setPeriodic(100, id -> vertx.eventBus().send("soak.news", "request",
+        new DeliveryOptions().setSendTimeout(REPLY_TIMEOUT), reply -> {
+        }));
+
+    final SockJSHandler sockJSHandler = SockJSHandler.create(vertx);
+    final BridgeOptions options = new BridgeOptions().setReplyTimeout(REPLY_TIMEOUT)
+        .addInboundPermitted(new PermittedOptions().setAddressRegex("soak\\..*"))
+        .addOutboundPermitted(new PermittedOptions().setAddressRegex("soak\\..*"));
+    sockJSHandler.bridge(options, new BridgeEventChain().add(sessions));
+
+    final Router router = Router.router(vertx);
+    router.route("/eventbus/*").handler(sockJSHandler);
+
+    final CompletableFuture<HttpServer> listening = new CompletableFuture<>();
+    vertx.createHttpServer(new HttpServerOptions().setHost("localhost").setPort(PORT))
+        .requestHandler(router::accept).listen(ar -> {
+      if (ar.succeeded()) {
+        listening.complete(ar.result());
+      } else {
+        listening.completeExceptionally(ar.cause());
+      }
+    });
+    listening.get(10, TimeUnit.SECONDS);
+  }
+
+
+  @After
+  public void tearDown() {
+    running = false;
+    clientVertx.close();
+    vertx.close();
+  }
+
+
+  @Test
+  public void noUpwardTrend() throws Exception {
+    final long baseHandlers = metrics.handlers();
+    final CountDownLatch stopped = new CountDownLatch(CLIENTS);
+
+    final LeakDetector detector = new LeakDetector(SAMPLE_INTERVAL)
+        .trackHeap(HEAP_TOLERANCE)
+        .track("sessions", sessions::open, CLIENTS)
+        .track("handlers", metrics::handlers, CLIENTS * 4)
+        .start();
+    try {
+      for (int i = 0; i < CLIENTS; i++) {
+        final int client = i;
+        clientVertx.runOnContext(v -> cycle(client, stopped));
+      }
+      TimeUnit.SECONDS.sleep(SECONDS);
+      running = false;
+      assertTrue("Clients not stopped", stopped.await(30, TimeUnit.SECONDS));
+    } finally {
+      // Stops the sampling, the trends are evaluated on the samples so far
+      detector.close();
+    }
+
+    LOGGER.info("{} cycles over {} sockets, trends:{}", cycles.get(), sessions.created(), detector.summary());
+    assertTrue("No cycle completed", cycles.get() > 0);
+    assertTrue("Upward trend " + detector.upwardTrends(), detector.upwardTrends().isEmpty());
+
+    // The bridge cleans up asynchronously, reply handlers at latest after the reply timeout
+    final long deadline = System.currentTimeMillis() + REPLY_TIMEOUT * 3;
+    while ((sessions.open() > 0 || metrics.handlers() > baseHandlers) && System.currentTimeMillis() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(100);
+    }
+    assertEquals("Sockets left open", 0, sessions.open());
+    assertEquals("Handlers left registered", baseHandlers, metrics.handlers());
+  }
+
+
+  /**
+   * Single cycle of a client, the next starts when closed.
+   */
+  private void cycle(int client, CountDownLatch stopped) {
+    if (!running) {
+      stopped.countDown();
+      return;
+    }
+    RawBridgeClient.connect(clientVertx, PORT, ar -> {
+      if (ar.failed()) {
+        LOGGER.warn("Soak client {} failed to connect", client, ar.cause());
+        clientVertx.setTimer(100, id -> cycle(client, stopped));
+        return;
+      }
+      final RawBridgeClient connection = ar.result();
+      final String replyAddress = "soak.reply." + client;
+      final boolean[] done = {false};
+      connection.frameHandler(frame -> {
+        if (done[0]) {
+          // Frames they were on the way while closing
+          return;
+        }
+        if (frame.getString("replyAddress") != null) {
+          connection.send(frame.getString("replyAddress"), "pong");
+        } else if ("err".equals(frame.getString("type")) || replyAddress.equals(frame.getString("address"))) {
+          done[0] = true;
+          connection.publish("soak.news", "news");
+          connection.unregister("soak.news");
+          connection.close();
+          cycles.incrementAndGet();
+          clientVertx.setTimer(CYCLE_PAUSE, id -> cycle(client, stopped));
+        }
+      });
+      connection.register("soak.news");
+      connection.send("soak.echo", "ping", replyAddress);
+    });
+  }
+}
@@ -0,0 +1,54 @@
+package ch.sourcemotion.vertx.dart.soak;
+
+import io.vertx.core.VertxOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.metrics.MetricsOptions;
+import io.vertx.core.metrics.impl.DummyVertxMetrics;
+import io.vertx.core.spi.metrics.EventBusMetrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the currently registered event bus handlers over the metrics SPI. As the bridge registers a handler per socket
+ * and address, and per request of a client they waits for a reply, any leaked registration shows up here.
+ *
+ * @author Michel Werren
+ */
+public class HandlerCountingMetrics extends DummyVertxMetrics {
+  private final AtomicLong handlers = new AtomicLong();
+
+
+  /**
+   * @param options
+   * @return Those options, with this metrics enabled.
+   */
+  public VertxOptions applyTo(VertxOptions options) {
+    return options.setMetricsOptions(new MetricsOptions().setEnabled(true).setFactory((vertx, o) -> this));
+  }
+
+
+  @Override
+  public EventBusMetrics<Void> createMetrics(EventBus eventBus) {
+    return new DummyEventBusMetrics() {
+      @Override
+      public Void handlerRegistered(String address, String repliedAddress) {
+        handlers.incrementAndGet();
+        return null;
+      }
+
+
+      @Override
+      public void handlerUnregistered(Void handler) {
+        handlers.decrementAndGet();
+      }
+    };
+  }
+
+
+  /**
+   * @return Count of currently registered handlers, including reply handlers.
+   */
+  public long handlers() {
+    return handlers.get();
+  }
+}
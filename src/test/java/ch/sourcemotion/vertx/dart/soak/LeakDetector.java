@@ -0,0 +1,197 @@
+package ch.sourcemotion.vertx.dart.soak;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Samples gauges periodically during a soak run and detects upward trends, which indicate leaks.
+ * <p>
+ * The trend of each gauge is the least squares slope over its samples, without the warm up phase at the beginning. A gauge
+ * leaks when its trend over the sampled time exceeds the tolerance of that gauge. So short spikes, like a garbage collection
+ * that happens later or many clients they are connected at the same time, are not taken as leak.
+ * <p>
+ * Sampling happens on an own thread, so the gauges must be thread safe.
+ *
+ * @author Michel Werren
+ */
+public class LeakDetector implements AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LeakDetector.class);
+
+  /**
+   * Fraction of the samples at the beginning they are ignored for the trend.
+   */
+  private static final double WARM_UP_FRACTION = 0.25;
+
+  private final long intervalMillis;
+
+  private final Map<String, Series> series = new LinkedHashMap<>();
+
+  private final long startNanos = System.nanoTime();
+
+  private ScheduledExecutorService sampler;
+
+
+  /**
+   * @param intervalMillis Interval between the samples.
+   */
+  public LeakDetector(long intervalMillis) {
+    this.intervalMillis = intervalMillis;
+  }
+
+
+  /**
+   * @param name
+   * @param gauge
+   * @param tolerance Maximum growth over the sampled time they is not considered as leak.
+   * @return
+   */
+  public synchronized LeakDetector track(String name, LongSupplier gauge, long tolerance) {
+    series.put(name, new Series(name, gauge, tolerance));
+    return this;
+  }
+
+
+  /**
+   * Tracks the used heap, sampled after a garbage collection.
+   *
+   * @param tolerance In bytes
+   * @return
+   */
+  public LeakDetector trackHeap(long tolerance) {
+    return track("heap", () -> {
+      System.gc();
+      return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }, tolerance);
+  }
+
+
+  public synchronized LeakDetector start() {
+    sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "leak-detector");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sampler.scheduleAtFixedRate(this::sample, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    return this;
+  }
+
+
+  /**
+   * Takes a sample of all gauges.
+   */
+  public synchronized void sample() {
+    final double seconds = (System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+    for (Series s : series.values()) {
+      try {
+        s.add(seconds, s.gauge.getAsLong());
+      } catch (RuntimeException e) {
+        LOGGER.warn("Failed to sample " + s.name, e);
+      }
+    }
+  }
+
+
+  /**
+   * @return Description of each gauge they grew more than its tolerance. Empty when no leak was detected.
+   */
+  public synchronized List<String> upwardTrends() {
+    final List<String> trends = new ArrayList<>();
+    for (Series s : series.values()) {
+      if (s.growth() > s.tolerance) {
+        trends.add(s.toString());
+      }
+    }
+    return trends;
+  }
+
+
+  /**
+   * @return Trend of all gauges.
+   */
+  public synchronized String summary() {
+    final StringBuilder summary = new StringBuilder();
+    series.values().forEach(s -> summary.append(System.lineSeparator()).append("  ").append(s));
+    return summary.toString();
+  }
+
+
+  @Override
+  public synchronized void close() {
+    if (sampler != null) {
+      sampler.shutdownNow();
+      sampler = null;
+    }
+  }
+
+
+  private static final class Series {
+    final String name;
+
+    final LongSupplier gauge;
+
+    final long tolerance;
+
+    final List<double[]> samples = new ArrayList<>();
+
+
+    Series(String name, LongSupplier gauge, long tolerance) {
+      this.name = name;
+      this.gauge = gauge;
+      this.tolerance = tolerance;
+    }
+
+
+    void add(double seconds, long value) {
+      samples.add(new double[]{seconds, value});
+    }
+
+
+    /**
+     * @return Least squares slope of the samples after the warm up, extrapolated over their time span.
+     */
+    double growth() {
+      final List<double[]> window = samples.subList((int) (samples.size() * WARM_UP_FRACTION), samples.size());
+      if (window.size() < 2) {
+        return 0;
+      }
+      double meanT = 0;
+      double meanV = 0;
+      for (double[] sample : window) {
+        meanT += sample[0];
+        meanV += sample[1];
+      }
+      meanT /= window.size();
+      meanV /= window.size();
+      double covariance = 0;
+      double variance = 0;
+      for (double[] sample : window) {
+        covariance += (sample[0] - meanT) * (sample[1] - meanV);
+        variance += (sample[0] - meanT) * (sample[0] - meanT);
+      }
+      if (variance == 0) {
+        return 0;
+      }
+      final double span = window.get(window.size() - 1)[0] - window.get(0)[0];
+      return covariance / variance * span;
+    }
+
+
+    @Override
+    public String toString() {
+      final long first = samples.isEmpty() ? 0 : (long) samples.get(0)[1];
+      final long last = samples.isEmpty() ? 0 : (long) samples.get(samples.size() - 1)[1];
+      return String.format("%s: samples=%d, first=%d, last=%d, trend=%+.0f, tolerance=%d", name, samples.size(), first,
+          last, growth(), tolerance);
+    }
+  }
+}
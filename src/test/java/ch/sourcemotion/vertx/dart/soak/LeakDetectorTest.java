@@ -0,0 +1,42 @@
+package ch.sourcemotion.vertx.dart.soak;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Michel Werren
+ */
+public class LeakDetectorTest {
+
+
+  /**
+   * A gauge they grows steadily is a leak, a fluctuating gauge or a spike within the warm up not.
+   */
+  @Test
+  public void detectsOnlySteadyGrowth() throws Exception {
+    final AtomicLong growing = new AtomicLong();
+    final AtomicLong fluctuating = new AtomicLong();
+    final AtomicLong warmUpSpike = new AtomicLong(1000);
+
+    try (LeakDetector detector = new LeakDetector(1000)
+        .track("growing", growing::get, 10)
+        .track("fluctuating", fluctuating::get, 10)
+        .track("warmUpSpike", warmUpSpike::get, 10)) {
+      for (int i = 0; i < 40; i++) {
+        growing.addAndGet(2);
+        fluctuating.set(i % 2 == 0 ? 0 : 20);
+        if (i == 5) {
+          warmUpSpike.set(0);
+        }
+        detector.sample();
+        Thread.sleep(5);
+      }
+      assertEquals(1, detector.upwardTrends().size());
+      assertTrue(detector.upwardTrends().get(0).startsWith("growing"));
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package ch.sourcemotion.vertx.dart.soak;
+
+import ch.sourcemotion.vertx.dart.bridge.BridgeEventInterceptor;
+import io.vertx.ext.bridge.BridgeEventType;
+import io.vertx.ext.web.handler.sockjs.BridgeEvent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the open sockets of the bridge.
+ *
+ * @author Michel Werren
+ */
+public class SessionCounter implements BridgeEventInterceptor {
+  private final AtomicLong open = new AtomicLong();
+
+  private final AtomicLong created = new AtomicLong();
+
+
+  @Override
+  public boolean intercept(BridgeEvent event) {
+    if (event.type() == BridgeEventType.SOCKET_CREATED) {
+      open.incrementAndGet();
+      created.incrementAndGet();
+    } else if (event.type() == BridgeEventType.SOCKET_CLOSED) {
+      open.decrementAndGet();
+    }
+    return true;
+  }
+
+
+  public long open() {
+    return open.get();
+  }
+
+
+  public long created() {
+    return created.get();
+  }
+}
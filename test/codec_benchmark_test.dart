@@ -0,0 +1,94 @@
+@TestOn("browser || phantomjs")
+@Timeout(const Duration(seconds: 120))
+@Tags(const ["client_only", "benchmark"])
+import 'dart:convert';
+
+import 'package:js/js_util.dart';
+import 'package:logging/logging.dart';
+import 'package:test/test.dart';
+import 'package:vertx_dart_sockjs/vertx_event_bus.dart';
+
+import 'codec_dto.dart';
+import 'test_util.dart';
+
+final Logger _log = new Logger("CodecBenchmark");
+
+const int _warmUpIterations = 20000;
+
+const int _iterations = 200000;
+
+/// Compares the generated codecs against the default path, means [encodeBody] / [decodeBody] without registered codec
+/// together with a hand copy of the DTO from / to a [Map].
+///
+/// Run with: pub run test -p phantomjs -t benchmark test/codec_benchmark_test.dart
+void main() {
+  startLogger();
+
+  final GeneratedCodecDto dto = new GeneratedCodecDto("string", 100,
+      doubleValue: 1.5,
+      boolean: true,
+      child: new GeneratedCodecChildDto("child"),
+      children: [new GeneratedCodecChildDto("first"), new GeneratedCodecChildDto("second")])
+    ..tags = ["a", "b"];
+
+  final EncoderRegistry defaultEncoders = new EncoderRegistry();
+  final EncoderRegistry generatedEncoders = new EncoderRegistry();
+  final DecoderRegistry generatedDecoders = new DecoderRegistry();
+  registerCodecs(generatedEncoders, generatedDecoders);
+
+  final Object wire = encodeBody(generatedEncoders, dto);
+  // Body of a received message, parsed by vertx-eventbus.js
+  final Object received = jsify(JSON.decode(wire));
+
+  test("Benchmark encode", () {
+    double defaultOps = _measure(() => encodeBody(defaultEncoders, _toMap(dto)));
+    double generatedOps = _measure(() => encodeBody(generatedEncoders, dto));
+
+    _log.info("encode default: ${defaultOps.round()} ops/sec, generated: ${generatedOps.round()} ops/sec");
+    expect(encodeBody(defaultEncoders, _toMap(dto)), equals(wire));
+  });
+
+  test("Benchmark decode", () {
+    double defaultOps = _measure(() => _fromMap(decodeBody(null, received)));
+    double generatedOps = _measure(() => decodeBody(generatedDecoders[GeneratedCodecDto], received));
+
+    _log.info("decode default: ${defaultOps.round()} ops/sec, generated: ${generatedOps.round()} ops/sec");
+    expect(_fromMap(decodeBody(null, received)), equals(decodeBody(generatedDecoders[GeneratedCodecDto], received)));
+  });
+}
+
+/// Returns the operations per second of [op].
+double _measure(Object op()) {
+  for (int i = 0; i < _warmUpIterations; i++) {
+    op();
+  }
+  Stopwatch watch = new Stopwatch()..start();
+  for (int i = 0; i < _iterations; i++) {
+    op();
+  }
+  watch.stop();
+  return _iterations / (watch.elapsedMicroseconds / Duration.MICROSECONDS_PER_SECOND);
+}
+
+/// Hand written copy like it's usually done with the default encoder
+Map<String, Object> _toMap(GeneratedCodecDto dto) => {
+      "string": dto.string,
+      "integer": dto.integer,
+      "doubleValue": dto.doubleValue,
+      "boolean": dto.boolean,
+      "child": {"name": dto.child.name},
+      "children": dto.children.map((GeneratedCodecChildDto c) => {"name": c.name}).toList(),
+      "tags": dto.tags
+    };
+
+/// Hand written copy like it's usually done with the default decoder
+GeneratedCodecDto _fromMap(Map<String, Object> map) {
+  Map<String, Object> child = map["child"];
+  List<Map<String, Object>> children = map["children"];
+  return new GeneratedCodecDto(map["string"], map["integer"],
+      doubleValue: map["doubleValue"],
+      boolean: map["boolean"],
+      child: new GeneratedCodecChildDto(child["name"]),
+      children: children.map((Map<String, Object> c) => new GeneratedCodecChildDto(c["name"])).toList())
+    ..tags = new List<String>.from(map["tags"]);
+}
@@ -0,0 +1,65 @@
+library codec_dto;
+
+import 'package:quiver/core.dart';
+import 'package:vertx_dart_sockjs/vertx_event_bus.dart';
+
+part 'codec_dto.g.dart';
+
+/// DTO with a codec generated by the builder of this package.
+@vertxCodec
+class GeneratedCodecDto {
+  final String string;
+  final int integer;
+  final double doubleValue;
+  final bool boolean;
+  final GeneratedCodecChildDto child;
+  final List<GeneratedCodecChildDto> children;
+
+  /// Not final, so set after construction
+  List<String> tags;
+
+  GeneratedCodecDto(this.string, this.integer, {this.doubleValue, this.boolean, this.child, this.children});
+
+  @override
+  bool operator ==(Object other) =>
+      identical(this, other) ||
+      other is GeneratedCodecDto &&
+          string == other.string &&
+          integer == other.integer &&
+          doubleValue == other.doubleValue &&
+          boolean == other.boolean &&
+          child == other.child &&
+          _listEquals(children, other.children) &&
+          _listEquals(tags, other.tags);
+
+  @override
+  int get hashCode => hashObjects([string, integer, doubleValue, boolean, child]);
+}
+
+@vertxCodec
+class GeneratedCodecChildDto {
+  final String name;
+
+  GeneratedCodecChildDto(this.name);
+
+  @override
+  bool operator ==(Object other) => identical(this, other) || other is GeneratedCodecChildDto && name == other.name;
+
+  @override
+  int get hashCode => name.hashCode;
+}
+
+bool _listEquals(List a, List b) {
+  if (a == null || b == null) {
+    return a == b;
+  }
+  if (a.length != b.length) {
+    return false;
+  }
+  for (int i = 0; i < a.length; i++) {
+    if (a[i] != b[i]) {
+      return false;
+    }
+  }
+  return true;
+}
@@ -0,0 +1,103 @@
+// GENERATED CODE - DO NOT MODIFY BY HAND
+
+part of codec_dto;
+
+// **************************************************************************
+// Generator: VertxCodecGenerator
+// **************************************************************************
+
+/// Generated codec for [GeneratedCodecDto].
+class GeneratedCodecDtoCodec {
+  /// [EventBusBodyEncoder] for [GeneratedCodecDto].
+  static String encode(GeneratedCodecDto dto) {
+    StringBuffer out = new StringBuffer();
+    write(out, dto);
+    return out.toString();
+  }
+
+  /// Writes that [dto] as JSON object into [out].
+  static void write(StringSink out, GeneratedCodecDto dto) {
+    if (dto == null) {
+      out.write('null');
+      return;
+    }
+    out.write('{"string":');
+    writeJsonString(out, dto.string);
+    out.write(',"integer":');
+    writeJsonPrimitive(out, dto.integer);
+    out.write(',"doubleValue":');
+    writeJsonPrimitive(out, dto.doubleValue);
+    out.write(',"boolean":');
+    writeJsonPrimitive(out, dto.boolean);
+    out.write(',"child":');
+    GeneratedCodecChildDtoCodec.write(out, dto.child);
+    out.write(',"children":');
+    writeJsonList(out, dto.children, (StringSink out, GeneratedCodecChildDto e) => GeneratedCodecChildDtoCodec.write(out, e));
+    out.write(',"tags":');
+    writeJsonList(out, dto.tags, (StringSink out, String e) => writeJsonString(out, e));
+    out.write('}');
+  }
+
+  /// [EventBusBodyDecoder] for [GeneratedCodecDto].
+  static GeneratedCodecDto decode(dynamic body) => fromJson(decodeJsonObject(body));
+
+  /// Creates a [GeneratedCodecDto] from that JSON object, either a [Map] or the JS object of a received message.
+  static GeneratedCodecDto fromJson(dynamic json) {
+    if (json == null) {
+      return null;
+    }
+    return new GeneratedCodecDto(readJsonField(json, "string") as String, readJsonField(json, "integer") as int, doubleValue: (readJsonField(json, "doubleValue") as num)?.toDouble(), boolean: readJsonField(json, "boolean") as bool, child: GeneratedCodecChildDtoCodec.fromJson(readJsonField(json, "child")), children: decodeJsonList(readJsonField(json, "children") as List, (dynamic e) => GeneratedCodecChildDtoCodec.fromJson(e)))..tags = decodeJsonList(readJsonField(json, "tags") as List, (dynamic e) => e as String);
+  }
+
+  /// Registers the encoder and decoder of [GeneratedCodecDto] on those registries.
+  static void register(EncoderRegistry encoders, DecoderRegistry decoders) {
+    encoders[GeneratedCodecDto] = encode;
+    decoders[GeneratedCodecDto] = decode;
+    registerRawBodyDecoder(decode);
+  }
+}
+
+/// Generated codec for [GeneratedCodecChildDto].
+class GeneratedCodecChildDtoCodec {
+  /// [EventBusBodyEncoder] for [GeneratedCodecChildDto].
+  static String encode(GeneratedCodecChildDto dto) {
+    StringBuffer out = new StringBuffer();
+    write(out, dto);
+    return out.toString();
+  }
+
+  /// Writes that [dto] as JSON object into [out].
+  static void write(StringSink out, GeneratedCodecChildDto dto) {
+    if (dto == null) {
+      out.write('null');
+      return;
+    }
+    out.write('{"name":');
+    writeJsonString(out, dto.name);
+    out.write('}');
+  }
+
+  /// [EventBusBodyDecoder] for [GeneratedCodecChildDto].
+  static GeneratedCodecChildDto decode(dynamic body) => fromJson(decodeJsonObject(body));
+
+  /// Creates a [GeneratedCodecChildDto] from that JSON object, either a [Map] or the JS object of a received message.
+  static GeneratedCodecChildDto fromJson(dynamic json) {
+    if (json == null) {
+      return null;
+    }
+    return new GeneratedCodecChildDto(readJsonField(json, "name") as String);
+  }
+
+  /// Registers the encoder and decoder of [GeneratedCodecChildDto] on those registries.
+  static void register(EncoderRegistry encoders, DecoderRegistry decoders) {
+    encoders[GeneratedCodecChildDto] = encode;
+    decoders[GeneratedCodecChildDto] = decode;
+    registerRawBodyDecoder(decode);
+  }
+}
+
+/// Registers the codecs of all DTO's of this library on those registries. To call once per event bus.
+void registerCodecs(EncoderRegistry encoders, DecoderRegistry decoders) {
+  GeneratedCodecDtoCodec.register(encoders, decoders);
+  GeneratedCodecChildDtoCodec.register(encoders, decoders);
+}
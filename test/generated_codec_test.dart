@@ -0,0 +1,100 @@
+@TestOn("browser || phantomjs")
+@Timeout(const Duration(seconds: 10))
+@Tags(const ["client_only"])
+import 'dart:convert';
+
+import 'package:js/js_util.dart';
+import 'package:test/test.dart';
+import 'package:vertx_dart_sockjs/vertx_event_bus.dart';
+
+import 'codec_dto.dart';
+import 'test_util.dart';
+
+void main() {
+  startLogger();
+
+  GeneratedCodecDto createDto() => new GeneratedCodecDto("str\"ing", 100,
+      doubleValue: 1.5,
+      boolean: true,
+      child: new GeneratedCodecChildDto("child"),
+      children: [new GeneratedCodecChildDto("first"), new GeneratedCodecChildDto("second")])
+    ..tags = ["a", "b"];
+
+  test("Test generated codec round trip", () {
+    GeneratedCodecDto start = createDto();
+
+    String wire = GeneratedCodecDtoCodec.encode(start);
+    GeneratedCodecDto end = GeneratedCodecDtoCodec.decode(wire);
+
+    expect(end, equals(start));
+  });
+
+  test("Test generated encoder writes valid JSON", () {
+    Map<String, dynamic> json = JSON.decode(GeneratedCodecDtoCodec.encode(createDto()));
+
+    expect(json["string"], equals("str\"ing"));
+    expect(json["integer"], equals(100));
+    expect(json["doubleValue"], equals(1.5));
+    expect(json["boolean"], isTrue);
+    expect(json["child"], equals({"name": "child"}));
+    expect(json["children"], hasLength(2));
+    expect(json["tags"], equals(["a", "b"]));
+  });
+
+  test("Test generated codec with null values", () {
+    GeneratedCodecDto start = new GeneratedCodecDto(null, null);
+
+    String wire = GeneratedCodecDtoCodec.encode(start);
+    expect(wire, equals('{"string":null,"integer":null,"doubleValue":null,"boolean":null,"child":null,"children":null,"tags":null}'));
+    expect(GeneratedCodecDtoCodec.decode(wire), equals(start));
+  });
+
+  test("Test generated decoder accepts whole numbers for double fields", () {
+    GeneratedCodecDto dto = GeneratedCodecDtoCodec.decode('{"string":"s","integer":1,"doubleValue":2}');
+
+    expect(dto.doubleValue, equals(2.0));
+    expect(dto.doubleValue, new isInstanceOf<double>());
+  });
+
+  test("Test generated decoder reads the JS object of a received message", () {
+    GeneratedCodecDto start = createDto();
+    // Like the body of a received message, parsed by vertx-eventbus.js
+    Object received = jsify(JSON.decode(GeneratedCodecDtoCodec.encode(start)));
+
+    expect(GeneratedCodecDtoCodec.fromJson(received), equals(start));
+    expect(decodeBody(GeneratedCodecDtoCodec.decode, received), equals(start));
+  });
+
+  test("Test generated codec registration", () {
+    EncoderRegistry encoders = new EncoderRegistry();
+    DecoderRegistry decoders = new DecoderRegistry();
+
+    registerCodecs(encoders, decoders);
+
+    expect(encoders.hasEncoderFor(GeneratedCodecDto), isTrue);
+    expect(decoders.hasDecoderFor(GeneratedCodecDto), isTrue);
+    expect(encoders.hasEncoderFor(GeneratedCodecChildDto), isTrue);
+    expect(decoders.hasDecoderFor(GeneratedCodecChildDto), isTrue);
+
+    GeneratedCodecDto start = createDto();
+    Object encoded = encodeBody(encoders, start);
+    expect(decodeBody(decoders[GeneratedCodecDto], encoded), equals(start));
+
+    decoders.removeDecoder(GeneratedCodecDto);
+    expect(decoders.hasDecoderFor(GeneratedCodecDto), isFalse);
+  });
+
+  test("Test JSON string escaping", () {
+    StringBuffer out = new StringBuffer();
+    writeJsonString(out, 'line\nbreak "quoted" back\\slash');
+
+    expect(JSON.decode(out.toString()), equals('line\nbreak "quoted" back\\slash'));
+  });
+
+  test("Test NaN and infinite numbers are rejected like JSON.encode does", () {
+    for (double value in [double.NAN, double.INFINITY, double.NEGATIVE_INFINITY]) {
+      expect(() => JSON.encode(value), throwsA(new isInstanceOf<JsonUnsupportedObjectError>()));
+      expect(() => writeJsonPrimitive(new StringBuffer(), value), throwsA(new isInstanceOf<JsonUnsupportedObjectError>()));
+    }
+  });
+}
@@ -0,0 +1,84 @@
+@TestOn("browser || phantomjs")
+@Timeout(const Duration(seconds: 90))
+import 'dart:async';
+
+import 'package:logging/logging.dart';
+import 'package:test/test.dart';
+import 'package:vertx_dart_sockjs/vertx_event_bus.dart';
+
+import 'test_util.dart';
+
+final Logger _log = new Logger("HeartbeatTest");
+
+const eventbusAddress = "http://localhost:9000/eventbus";
+
+/// Phase the client sends events
+const Duration trafficPhase = const Duration(seconds: 15);
+
+/// Phase the client is idle
+const Duration idlePhase = const Duration(seconds: 30);
+
+/// Phase the client only receives events, longer than multiple minimum intervals
+const Duration inboundPhase = const Duration(seconds: 10);
+
+main() async {
+  startLogger();
+
+  test("Test fixed and adaptive heartbeat", () async {
+    EventBus fixed = await EventBus.create(eventbusAddress);
+    EventBus adaptive = await EventBus.create(eventbusAddress,
+        options: new EventBusOptions(adaptiveHeartbeat: const AdaptiveHeartbeatOptions()));
+
+    try {
+      fixed.send("heartbeat.strategy", body: "fixed");
+      adaptive.send("heartbeat.strategy", body: "adaptive");
+
+      Timer traffic = new Timer.periodic(const Duration(milliseconds: 250), (_) {
+        fixed.send("heartbeat.traffic", body: "fixed");
+        adaptive.send("heartbeat.traffic", body: "adaptive");
+      });
+      await new Future.delayed(trafficPhase);
+      traffic.cancel();
+
+      _log.info("Traffic phase done");
+      await new Future.delayed(idlePhase);
+
+      expect(fixed.open, isTrue);
+      expect(adaptive.open, isTrue);
+
+      AsyncResult result = await fixed.sendWithReplyAsync("heartbeat.done");
+      expect(result.success, isTrue);
+    } catch (e, st) {
+      _log.severe("Heartbeat test failed", e, st);
+      fail("Heartbeat test failed");
+    } finally {
+      fixed.close();
+      adaptive.close();
+    }
+  });
+
+  test("Test adaptive heartbeat sends no ping while inbound messages arrive", () async {
+    EventBus adaptive = await EventBus.create(eventbusAddress,
+        options: new EventBusOptions(adaptiveHeartbeat: const AdaptiveHeartbeatOptions(minInterval: 2000, maxInterval: 8000)));
+
+    try {
+      int received = 0;
+      adaptive.consumer("heartbeat.inbound", (VertxMessage msg) => received++);
+
+      // Server starts to publish and counts the pings from now on
+      AsyncResult started = await adaptive.sendWithReplyAsync("heartbeat.inbound.start");
+      expect(started.success, isTrue);
+      await new Future.delayed(inboundPhase);
+      AsyncResult stopped = await adaptive.sendWithReplyAsync("heartbeat.inbound.stop");
+
+      expect(stopped.success, isTrue);
+      expect(received, greaterThan(0));
+      expect(stopped.message.body, equals(0), reason: "Pings while inbound messages arrived");
+    } catch (e, st) {
+      _log.severe("Inbound heartbeat test failed", e, st);
+      fail("Inbound heartbeat test failed");
+    } finally {
+      adaptive.close();
+    }
+  });
+}
@@ -18,34 +18,13 @@ main() async {
   startLogger();
 
   test("Test reconnect after connection lost", () async {
-    TestControl testControl = new TestControl(6);
+    // Per event bus: reopened twice, closed twice and the consumer called twice
+    TestControl testControl = new TestControl(12);
 
     try {
-      EventBusOptions options = new EventBusOptions(
-          reopenedCallback: () {
-            // Must be called after reconnect
-            _log.info("reopenedCallback executed");
-            testControl.visited();
-          },
-          autoReconnect: true,
-          autoReconnectInterval: 2000);
-      EventBus eventBus = await EventBus.create(eventbusAddress, consumerExecDelegate: Zone.current.runGuarded, options: options);
-
-      expect(eventBus.open, isTrue);
-
-      // Should get called twice
-      eventBus.onClose(() {
-        _log.info("onClose executed");
-        expect(eventBus.open, isFalse);
-        testControl.visited();
-      });
-
-      eventBus.consumer("after", (VertxMessage msg) {
-        // Must be called by server after reconnect. Two times
-        _log.info("consumer after reconnect executed");
-        testControl.visited();
-        msg.reply();
-      });
+      // Default, full transport negotiation on each connect
+      await _connect(testControl, "after.none", const EventBusOptions().transportCacheMode);
+      await _connect(testControl, "after.memory", TransportCacheMode.MEMORY);
     } catch (e, st) {
       _log.severe("Failed to send test message", e, st);
       fail("Failed to send test message");
@@ -54,3 +33,42 @@ main() async {
     await testControl.completer.future;
   });
 }
+
+/// Connects an event bus with that transport cache [mode], its consumer on [address] replies the times to open.
+Future _connect(TestControl testControl, String address, TransportCacheMode mode) async {
+  EventBusOptions options = new EventBusOptions(
+      reopenedCallback: () {
+        // Must be called after reconnect
+        _log.info("reopenedCallback executed ($mode)");
+        testControl.visited();
+      },
+      autoReconnect: true,
+      autoReconnectInterval: 2000,
+      transportCacheMode: mode);
+  EventBus eventBus = await EventBus.create(eventbusAddress, consumerExecDelegate: Zone.current.runGuarded, options: options);
+
+  expect(eventBus.open, isTrue);
+  // Initial connect with full transport negotiation
+  expect(eventBus.lastOpenCached, isFalse);
+  final int initialOpenMillis = eventBus.lastOpenMillis;
+  _log.info("Initial connection opened in $initialOpenMillis ms ($mode)");
+
+  // Should get called twice
+  eventBus.onClose(() {
+    _log.info("onClose executed ($mode)");
+    expect(eventBus.open, isFalse);
+    testControl.visited();
+  });
+
+  eventBus.consumer(address, (VertxMessage msg) {
+    // Must be called by server after reconnect. Two times
+    _log.info("consumer after reconnect executed ($mode)");
+    testControl.visited();
+    _log.info("Reconnected in ${eventBus.lastOpenMillis} ms, initial connect took $initialOpenMillis ms ($mode)");
+    msg.reply(body: {
+      "initialOpenMillis": initialOpenMillis,
+      "reconnectOpenMillis": eventBus.lastOpenMillis,
+      "reconnectCached": eventBus.lastOpenCached
+    });
+  });
+}
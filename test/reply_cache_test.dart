@@ -0,0 +1,94 @@
+@TestOn("browser || phantomjs")
+@Timeout(const Duration(seconds: 10))
+@Tags(const ["client_only"])
+import 'dart:async';
+
+import 'package:test/test.dart';
+import 'package:vertx_dart_sockjs/src/reply_cache_base.dart';
+
+import 'test_util.dart';
+
+void main() {
+  startLogger();
+
+  const String address = "config.get";
+
+  ReplyCache<String> createCache({Duration ttl = const Duration(minutes: 1), int maxEntries = 100}) =>
+      new ReplyCache(new ReplyCacheOptions(ttlByAddress: {address: ttl}, maxEntries: maxEntries, keyHeaders: ["lang"]));
+
+  test("Test in flight requests get coalesced", () async {
+    ReplyCache<String> cache = createCache(ttl: Duration.ZERO);
+    Completer<String> wire = new Completer();
+    int sent = 0;
+    Future<String> send() {
+      sent++;
+      return wire.future;
+    }
+
+    String key = cache.keyOf(address, "body", null);
+    Future<String> first = cache.lookup(address, key, send, (_) => true);
+    Future<String> second = cache.lookup(address, key, send, (_) => true);
+    wire.complete("reply");
+
+    expect(await first, equals("reply"));
+    expect(await second, equals("reply"));
+    expect(sent, equals(1));
+    // Zero ttl, so nothing kept
+    expect(cache.length, equals(0));
+  });
+
+  test("Test replies get cached and invalidated", () async {
+    ReplyCache<String> cache = createCache();
+    int sent = 0;
+    Future<String> send() => new Future.value("reply ${++sent}");
+
+    String key = cache.keyOf(address, "body", null);
+    expect(await cache.lookup(address, key, send, (_) => true), equals("reply 1"));
+    expect(await cache.lookup(address, key, send, (_) => true), equals("reply 1"));
+
+    cache.invalidate(address);
+    expect(await cache.lookup(address, key, send, (_) => true), equals("reply 2"));
+
+    cache.invalidateAll();
+    expect(cache.length, equals(0));
+  });
+
+  test("Test not cacheable replies are not kept", () async {
+    ReplyCache<String> cache = createCache();
+    String key = cache.keyOf(address, "body", null);
+
+    await cache.lookup(address, key, () => new Future.value("failure"), (_) => false);
+    expect(cache.length, equals(0));
+  });
+
+  test("Test least recently used reply get evicted", () async {
+    ReplyCache<String> cache = createCache(maxEntries: 2);
+    int sent = 0;
+    Future<String> send() => new Future.value("reply ${++sent}");
+
+    String first = cache.keyOf(address, 1, null);
+    String second = cache.keyOf(address, 2, null);
+    String third = cache.keyOf(address, 3, null);
+    await cache.lookup(address, first, send, (_) => true);
+    await cache.lookup(address, second, send, (_) => true);
+    // Touch first, so second is the least recently used
+    await cache.lookup(address, first, send, (_) => true);
+    await cache.lookup(address, third, send, (_) => true);
+
+    expect(cache.length, equals(2));
+    expect(await cache.lookup(address, first, send, (_) => true), equals("reply 1"));
+    expect(await cache.lookup(address, second, send, (_) => true), equals("reply 4"));
+  });
+
+  test("Test only selected headers are part of the key", () {
+    ReplyCache<String> cache = createCache();
+
+    expect(cache.keyOf(address, "body", {"lang": "de", "trace": "1"}), equals(cache.keyOf(address, "body", {"lang": "de", "trace": "2"})));
+    expect(cache.keyOf(address, "body", {"lang": "de"}), isNot(equals(cache.keyOf(address, "body", {"lang": "en"}))));
+    expect(cache.keyOf(address, "body", null), isNot(equals(cache.keyOf(address, "other", null))));
+    expect(cache.keyOf(address, "body", null), equals(cache.keyOf(address, "body", {})));
+    expect(cache.keyOf(address, "body", null), equals(cache.keyOf(address, "body", {"trace": "1"})));
+    expect(cache.handles(address), isTrue);
+    expect(cache.handles("other"), isFalse);
+  });
+}
@@ -0,0 +1,60 @@
+@TestOn("browser || phantomjs")
+@Timeout(const Duration(seconds: 60))
+import 'dart:async';
+
+import 'package:logging/logging.dart';
+import 'package:test/test.dart';
+import 'package:vertx_dart_sockjs/vertx_event_bus.dart';
+
+import 'test_util.dart';
+
+final Logger _log = new Logger("ReplyCoalescingTest");
+
+const eventbusAddress = "http://localhost:9000/eventbus";
+
+/// Count of components they request the config on a simulated page load.
+const int components = 20;
+
+main() async {
+  startLogger();
+
+  test("Test coalescing of identical requests on page load", () async {
+    EventBus eventBus = await EventBus.create(eventbusAddress,
+        options: new EventBusOptions(
+            replyCacheOptions: new ReplyCacheOptions(
+                ttlByAddress: {"config.get": const Duration(minutes: 1)}, invalidationAddress: "config.invalidate")));
+
+    try {
+      // Page load, all components ask at the same time
+      List<AsyncResult> results = await Future
+          .wait(new List.generate(components, (_) => eventBus.sendWithReplyAsync("config.get", body: "app")));
+      results.forEach((AsyncResult result) {
+        expect(result.success, isTrue);
+        expect(result.message.body, equals({"value": "config"}));
+        // Shared between all callers, so none of them can reply
+        expect(result.message.expectReply, isFalse);
+        expect(() => result.message.reply(body: "ack"), throwsA(new isInstanceOf<NoReplyExpectException>()));
+      });
+
+      // Lazy loaded components, served from the cache
+      for (int i = 0; i < components; i++) {
+        AsyncResult result = await eventBus.sendWithReplyAsync("config.get", body: "app");
+        expect(result.success, isTrue);
+      }
+
+      // Server invalidates, so next request must hit the server again
+      await eventBus.sendWithReplyAsync("config.change");
+      // Give the invalidation time to arrive
+      await new Future.delayed(const Duration(seconds: 1));
+      await eventBus.sendWithReplyAsync("config.get", body: "app");
+
+      AsyncResult done = await eventBus.sendWithReplyAsync("config.done", body: components * 2 + 1);
+      expect(done.success, isTrue);
+    } catch (e, st) {
+      _log.severe("Failed to request config", e, st);
+      fail("Failed to request config");
+    } finally {
+      eventBus.close();
+    }
+  });
+}
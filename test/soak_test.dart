@@ -0,0 +1,77 @@
+@TestOn("browser || phantomjs")
+@Timeout(const Duration(minutes: 70))
+import 'dart:async';
+
+import 'package:logging/logging.dart';
+import 'package:test/test.dart';
+import 'package:vertx_dart_sockjs/vertx_event_bus.dart';
+
+import 'test_util.dart';
+
+final Logger _log = new Logger("SoakTest");
+
+const eventbusAddress = "http://localhost:9000/eventbus";
+
+main() async {
+  startLogger();
+
+  test("Soak connect, consume, request, publish and close cycles", () async {
+    EventBus control = await EventBus.create(eventbusAddress);
+    try {
+      AsyncResult config = await control.sendWithReplyAsync("soak.config");
+      Map<String, dynamic> body = config.message.body;
+      Duration duration = new Duration(seconds: body["seconds"]);
+      _log.info("Soak for $duration");
+
+      Stopwatch watch = new Stopwatch()..start();
+      int cycles = 0;
+      while (watch.elapsed < duration) {
+        await _cycle();
+        cycles++;
+        control.send("soak.client.stats", body: {
+          "cycles": cycles,
+          "consumers": control.consumerCount,
+          "handlers": control.handlerAddressCount,
+          "pendingReplies": control.pendingReplyCount
+        });
+      }
+      _log.info("$cycles cycles done");
+
+      AsyncResult result = await control.sendWithReplyAsync("soak.done");
+      expect(result.success, isTrue);
+      expect(result.message.body, isEmpty);
+    } catch (e, st) {
+      _log.severe("Soak test failed", e, st);
+      fail("Soak test failed");
+    } finally {
+      control.close();
+    }
+  });
+}
+
+/// Single cycle of connect, register, request with reply, reply on a server request, publish, unregister and close.
+Future _cycle() async {
+  EventBus eventBus = await EventBus.create(eventbusAddress);
+  try {
+    Completer published = new Completer();
+    ConsumerReference consumer = eventBus.consumer("soak.news", (VertxMessage msg) {
+      if (msg.expectReply) {
+        msg.reply(body: msg.body);
+      } else if (!published.isCompleted) {
+        published.complete();
+      }
+    });
+
+    AsyncResult echo = await eventBus.sendWithReplyAsync("soak.echo", body: "echo");
+    expect(echo.success, isTrue);
+
+    eventBus.publish("soak.news", body: "published");
+    await published.future.timeout(const Duration(seconds: 5));
+
+    consumer.unregister();
+    expect(eventBus.handlerAddressCount, 0);
+    expect(eventBus.pendingReplyCount, 0);
+  } finally {
+    eventBus.close();
+  }
+}